@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.controller.ConditionalGetInterceptor;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    private final ConditionalGetInterceptor conditionalGetInterceptor;
+
+    public WebConfig(ConditionalGetInterceptor conditionalGetInterceptor) {
+        this.conditionalGetInterceptor = conditionalGetInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(conditionalGetInterceptor);
+    }
+}
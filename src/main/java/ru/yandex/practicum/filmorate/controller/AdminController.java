@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.service.AdminService;
+import ru.yandex.practicum.filmorate.storage.ActivityTracker;
+import ru.yandex.practicum.filmorate.storage.FilmCache;
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final AdminService adminService;
+
+    @GetMapping("/cache/films")
+    public FilmCache.Stats getFilmCacheStats() {
+        return adminService.getFilmCacheStats();
+    }
+
+    @GetMapping("/activity")
+    public ActivityTracker.Snapshot getActivity(@RequestParam(defaultValue = "10") int limit) {
+        return adminService.getActivity(limit);
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class Batches {
+    static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+
+    /**
+     * Отдаёт найденные сущности в порядке запроса, а id, которых не нашлось, перечисляет в заголовке.
+     */
+    static <T> ResponseEntity<List<T>> toResponse(List<Integer> requestedIds, List<T> found, ToIntFunction<T> id) {
+        Set<Integer> foundIds = new HashSet<>();
+        for (T item : found) {
+            foundIds.add(id.applyAsInt(item));
+        }
+        String missing = requestedIds.stream()
+                .filter(requestedId -> !foundIds.contains(requestedId))
+                .distinct()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!missing.isEmpty()) {
+            response.header(MISSING_IDS_HEADER, missing);
+        }
+        return response.body(found);
+    }
+}
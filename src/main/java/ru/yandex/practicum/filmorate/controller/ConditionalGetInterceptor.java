@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Условные GET-запросы по счётчикам версий. ETag строится из эпохи, суммы версий нужных таблиц и
+ * хэша адреса запроса, поэтому совпадение {@code If-None-Match} проверяется без обращения к базе.
+ */
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+    private final DataVersions dataVersions;
+
+    public ConditionalGetInterceptor(DataVersions dataVersions) {
+        this.dataVersions = dataVersions;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        Versioned versioned = handlerMethod.getMethodAnnotation(Versioned.class);
+        if (versioned == null || !isSafe(request.getMethod())) {
+            return true;
+        }
+        String etag = etag(request, versioned.value());
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    private String etag(HttpServletRequest request, DataVersions.Table[] tables) {
+        CRC32 crc = new CRC32();
+        crc.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+        if (request.getQueryString() != null) {
+            crc.update('?');
+            crc.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+        }
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            crc.update('z');
+        }
+        return "\"" + Long.toString(dataVersions.epoch(), 36) + "-" + dataVersions.sum(tables) + "-"
+                + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSafe(String method) {
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+}
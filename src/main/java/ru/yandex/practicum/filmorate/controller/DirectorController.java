@@ -2,10 +2,12 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.service.DirectorService;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 
 import java.util.List;
 
@@ -17,11 +19,17 @@ public class DirectorController {
     private final DirectorService directorService;
 
     @GetMapping
-    public List<Director> getAll() {
-        return directorService.getAll();
+    @Versioned(DataVersions.Table.DIRECTORS)
+    public ResponseEntity<List<Director>> getAll(@RequestParam(required = false) Integer limit,
+                                                 @RequestParam(required = false) String cursor) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(directorService.getAll());
+        }
+        return Pages.toResponse(directorService.getPage(cursor, limit != null ? limit : Pages.DEFAULT_LIMIT));
     }
 
     @GetMapping("/{id}")
+    @Versioned(DataVersions.Table.DIRECTORS)
     public Director getById(@PathVariable int id) {
         return directorService.getById(id)
                 .orElseThrow(() -> new NotFoundException("Режиссёр с id=" + id + " не найден"));
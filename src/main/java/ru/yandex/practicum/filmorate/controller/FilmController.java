@@ -1,36 +1,80 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.FilmBrowseDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.NewFilmRequest;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.dto.UpdateFilmRequest;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.DataVersions.Table;
+import ru.yandex.practicum.filmorate.storage.FacetIndex;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
 import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 public class FilmController {
+    private static final String NDJSON = "application/x-ndjson";
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<FilmDto> getAll() {
-        return filmService.getAll();
+    @Versioned({Table.FILMS, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
+    public ResponseEntity<List<FilmDto>> getAll(@RequestParam(required = false) Integer limit,
+                                                @RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) String fields) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(filmService.getAll(fields));
+        }
+        return Pages.toResponse(filmService.getPage(cursor, limit != null ? limit : Pages.DEFAULT_LIMIT, fields));
+    }
+
+    @GetMapping(params = "ids")
+    @Versioned({Table.FILMS, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
+    public ResponseEntity<List<FilmDto>> getByIds(@RequestParam List<Integer> ids,
+                                                  @RequestParam(required = false) String fields) {
+        return Batches.toResponse(ids, filmService.getByIds(ids, fields), FilmDto::getId);
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON)
+    public StreamingResponseBody exportAll() {
+        return out -> filmService.exportAll(films -> {
+            try {
+                for (FilmDto film : films) {
+                    out.write(objectMapper.writeValueAsBytes(film));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @GetMapping("/{id}")
-    public FilmDto getById(@PathVariable int id) {
-        return filmService.getById(id);
+    @Versioned({Table.FILMS, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
+    public ResponseEntity<byte[]> getById(@PathVariable int id,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                          String acceptEncoding) {
+        return Payloads.toResponse(filmService.getByIdPayload(id), acceptEncoding);
     }
 
     @PostMapping
@@ -57,15 +101,28 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<FilmDto> getPopular(
+    @Versioned({Table.FILMS, Table.LIKES, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
+    public ResponseEntity<byte[]> getPopular(
             @RequestParam(defaultValue = "10") int count,
             @RequestParam(required = false) Integer genreId,
-            @RequestParam(required = false) Integer year
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
-        return filmService.getPopular(count, genreId, year);
+        return Payloads.toResponse(filmService.getPopularPayload(count, genreId, year, cursor, fields),
+                acceptEncoding);
+    }
+
+    @GetMapping("/trending")
+    public List<FilmDto> getTrending(@RequestParam(defaultValue = "24h") String window,
+                                     @RequestParam(defaultValue = "10") int count,
+                                     @RequestParam(required = false) String fields) {
+        return filmService.getTrending(window, count, fields);
     }
 
     @GetMapping("/director/{directorId}")
+    @Versioned({Table.FILMS, Table.LIKES, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
     public List<FilmDto> getFilmsByDirector(
             @PathVariable int directorId,
             @RequestParam String sortBy
@@ -74,9 +131,40 @@ public class FilmController {
     }
 
     @GetMapping("/search")
+    @Versioned({Table.FILMS, Table.LIKES, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
     public List<FilmDto> searchFilms(@RequestParam String query,
-                                     @RequestParam(defaultValue = "title,director") String by) {
-        return filmService.searchFilms(query, by);
+                                     @RequestParam(defaultValue = "title,director") String by,
+                                     @RequestParam(required = false) String fields,
+                                     @RequestParam(defaultValue = "false") boolean fuzzy,
+                                     @RequestParam(defaultValue = "1000") int count) {
+        return filmService.searchFilms(query, by, fields, fuzzy, count);
+    }
+
+    @GetMapping("/suggest")
+    @Versioned({Table.FILMS, Table.LIKES, Table.DIRECTORS})
+    public List<SuggestionDto> getSuggestions(@RequestParam String prefix,
+                                              @RequestParam(defaultValue = "10") int limit) {
+        return filmService.getSuggestions(prefix, limit);
+    }
+
+    @GetMapping("/browse")
+    @Versioned({Table.FILMS, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
+    public FilmBrowseDto browse(@RequestParam(required = false) List<Integer> genreId,
+                                @RequestParam(required = false) List<Integer> mpaId,
+                                @RequestParam(required = false) List<Integer> directorId,
+                                @RequestParam(required = false) Integer yearFrom,
+                                @RequestParam(required = false) Integer yearTo,
+                                @RequestParam(required = false) Integer durationFrom,
+                                @RequestParam(required = false) Integer durationTo,
+                                @RequestParam(required = false) String cursor,
+                                @RequestParam(defaultValue = "20") int limit,
+                                @RequestParam(required = false) String fields) {
+        FacetIndex.Filter filter = new FacetIndex.Filter(
+                genreId == null ? null : new HashSet<>(genreId),
+                mpaId == null ? null : new HashSet<>(mpaId),
+                directorId == null ? null : new HashSet<>(directorId),
+                yearFrom, yearTo, durationFrom, durationTo);
+        return filmService.browse(filter, cursor, limit, fields);
     }
 
     @GetMapping("/common")
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 
 import java.util.List;
 
@@ -21,11 +22,13 @@ public class GenreController {
     }
 
     @GetMapping
+    @Versioned(DataVersions.Table.GENRES)
     public List<Genre> getAll() {
         return genreService.getAll();
     }
 
     @GetMapping("/{id}")
+    @Versioned(DataVersions.Table.GENRES)
     public Genre getById(@PathVariable int id) {
         return genreService.getById(id);
     }
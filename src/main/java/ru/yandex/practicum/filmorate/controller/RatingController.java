@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.service.RatingService;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 
 import java.util.List;
 
@@ -21,11 +22,13 @@ public class RatingController {
     }
 
     @GetMapping
+    @Versioned(DataVersions.Table.RATINGS)
     public List<Rating> getAll() {
         return ratingService.getAll();
     }
 
     @GetMapping("/{id}")
+    @Versioned(DataVersions.Table.RATINGS)
     public Rating getById(@PathVariable int id) {
         return ratingService.getById(id);
     }
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.NewReviewRequest;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
@@ -40,11 +41,12 @@ public class ReviewController {
     }
 
     @GetMapping
-    public List<ReviewDto> findReviews(
+    public ResponseEntity<List<ReviewDto>> findReviews(
             @RequestParam(value = "filmId", required = false) Integer filmId,
-            @RequestParam(value = "count", required = false) Integer count
+            @RequestParam(value = "count", required = false) Integer count,
+            @RequestParam(value = "cursor", required = false) String cursor
     ) {
-        return reviewService.findReviews(filmId, count);
+        return Pages.toResponse(reviewService.findReviews(filmId, count, cursor));
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -3,9 +3,11 @@ package ru.yandex.practicum.filmorate.controller;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.DataVersions.Table;
 
 import java.util.List;
 
@@ -20,8 +22,17 @@ public class UserController {
     }
 
     @GetMapping
-    public List<UserDto> getAll() {
-        return userService.getAll();
+    public ResponseEntity<List<UserDto>> getAll(@RequestParam(required = false) Integer limit,
+                                                @RequestParam(required = false) String cursor) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(userService.getAll());
+        }
+        return Pages.toResponse(userService.getPage(cursor, limit != null ? limit : Pages.DEFAULT_LIMIT));
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<UserDto>> getByIds(@RequestParam List<Integer> ids) {
+        return Batches.toResponse(ids, userService.getByIds(ids), UserDto::getId);
     }
 
     @GetMapping("/{id}")
@@ -57,6 +68,13 @@ public class UserController {
         return userService.getFriends(id);
     }
 
+    @GetMapping("/{id}/friends/popular")
+    @Versioned({Table.FRIENDS, Table.FILMS, Table.LIKES, Table.DIRECTORS, Table.GENRES, Table.RATINGS})
+    public List<FilmDto> getPopularAmongFriends(@PathVariable int id,
+                                                @RequestParam(defaultValue = "10") int count) {
+        return userService.getPopularAmongFriends(id, count);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public List<UserDto> getCommonFriends(@PathVariable int id,
                                           @PathVariable int otherId) {
@@ -64,8 +82,13 @@ public class UserController {
     }
 
     @GetMapping("/{id}/feed")
-    public List<FeedDto> getFeed(@PathVariable int id) {
-        return userService.getFeed(id);
+    public ResponseEntity<List<FeedDto>> getFeed(@PathVariable int id,
+                                                 @RequestParam(required = false) Integer limit,
+                                                 @RequestParam(required = false) String cursor) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(userService.getFeed(id));
+        }
+        return Pages.toResponse(userService.getFeedPage(id, cursor, limit != null ? limit : Pages.DEFAULT_LIMIT));
     }
 
     @GetMapping("/{id}/recommendations")
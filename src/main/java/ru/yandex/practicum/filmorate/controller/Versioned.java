@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Помечает GET-обработчик, ответ которого зависит только от перечисленных наборов данных и параметров
+ * запроса. Для таких обработчиков {@link ConditionalGetInterceptor} выставляет ETag и отвечает
+ * {@code 304 Not Modified}, не вызывая сам обработчик.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@interface Versioned {
+    DataVersions.Table[] value();
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в keyset-выборке: значение ключа сортировки и id последней отданной строки.
+ * Наружу передаётся как непрозрачный токен.
+ */
+public record Cursor(long sortKey, int id) {
+
+    public String encode() {
+        String raw = sortKey + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new Cursor(Long.parseLong(raw.substring(0, separator)), Integer.parseInt(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ValidationException("Некорректный курсор: " + token);
+        }
+    }
+}
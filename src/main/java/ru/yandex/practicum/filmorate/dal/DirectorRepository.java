@@ -4,6 +4,8 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.FilmCache;
 
 import java.util.List;
 import java.util.Optional;
@@ -12,20 +14,33 @@ import java.util.Optional;
 public class DirectorRepository extends FoundRepository<Director> {
 
     private static final String FIND_ALL_QUERY = "SELECT director_id, name  FROM directors";
+    private static final String FIND_PAGE_QUERY = "SELECT director_id, name FROM directors WHERE 1=1 %s";
     private static final String FIND_BY_ID_QUERY = "SELECT director_id, name  FROM directors WHERE director_id = ?";
     private static final String INSERT_QUERY = "INSERT INTO directors (name) VALUES (?)";
     private static final String UPDATE_QUERY = "UPDATE directors SET name = ? WHERE director_id = ?";
     private static final String DELETE_QUERY = "DELETE FROM directors WHERE director_id = ?";
 
+    private static final Keyset<Director> DIRECTOR_KEYSET = Keyset.byId("director_id", Director::getId);
+
+    private final FilmCache filmCache;
+    private final DataVersions dataVersions;
+
     public DirectorRepository(JdbcTemplate jdbcTemplate,
-                              RowMapper<Director> directorRowMapper) {
+                              RowMapper<Director> directorRowMapper, FilmCache filmCache,
+                              DataVersions dataVersions) {
         super(jdbcTemplate, directorRowMapper);
+        this.filmCache = filmCache;
+        this.dataVersions = dataVersions;
     }
 
     public List<Director> findAll() {
         return findMany(FIND_ALL_QUERY);
     }
 
+    public Page<Director> findAll(Cursor after, int limit) {
+        return findPage(FIND_PAGE_QUERY, DIRECTOR_KEYSET, after, limit);
+    }
+
     public Optional<Director> findById(int id) {
         return findOne(FIND_BY_ID_QUERY, id);
     }
@@ -33,16 +48,21 @@ public class DirectorRepository extends FoundRepository<Director> {
     public Director create(Director director) {
         int id = insert(INSERT_QUERY, director.getName());
         director.setId(id);
+        dataVersions.bump(DataVersions.Table.DIRECTORS);
         return director;
     }
 
     public Director update(Director director) {
         update(UPDATE_QUERY, director.getName(), director.getId());
+        filmCache.invalidateByDirector(director.getId());
+        dataVersions.bump(DataVersions.Table.DIRECTORS);
         return director;
     }
 
     public void delete(int id) {
         update(DELETE_QUERY, id);
+        filmCache.invalidateByDirector(id);
+        dataVersions.bump(DataVersions.Table.DIRECTORS);
     }
 
     public List<Director> findAllByIds(List<Integer> ids) {
@@ -5,6 +5,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.storage.ActivityTracker;
 
 import java.sql.Timestamp;
 import java.util.List;
@@ -29,9 +30,26 @@ public class FeedRepository extends FoundRepository<Feed> {
             ORDER BY timestamp ASC
             """;
 
+    private static final String GET_FEED_PAGE_BY_USER_ID = """
+            SELECT event_id,
+                   timestamp,
+                   user_id,
+                   entity_id,
+                   event_type,
+                   operation
+            FROM feed
+            WHERE user_id = ?
+            %s
+            """;
+
+    private static final Keyset<Feed> FEED_KEYSET = Keyset.byId("event_id", Feed::getEventId);
+
+    private final ActivityTracker activityTracker;
+
     @Autowired
-    public FeedRepository(JdbcTemplate jdbcTemplate, RowMapper<Feed> rowMapper) {
+    public FeedRepository(JdbcTemplate jdbcTemplate, RowMapper<Feed> rowMapper, ActivityTracker activityTracker) {
         super(jdbcTemplate, rowMapper);
+        this.activityTracker = activityTracker;
     }
 
     public void create(Feed feed) {
@@ -42,9 +60,28 @@ public class FeedRepository extends FoundRepository<Feed> {
                 feed.getEventType().name(),
                 feed.getOperation().name()
         );
+        activityTracker.record(feed);
+    }
+
+    public void createAll(List<Feed> feeds) {
+        if (feeds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_QUERY, feeds, feeds.size(), (ps, feed) -> {
+            ps.setInt(1, feed.getUserId());
+            ps.setTimestamp(2, Timestamp.from(feed.getTimestamp()));
+            ps.setInt(3, feed.getEntityId());
+            ps.setString(4, feed.getEventType().name());
+            ps.setString(5, feed.getOperation().name());
+        });
+        feeds.forEach(activityTracker::record);
     }
 
     public List<Feed> getByUserId(int userId) {
         return findMany(GET_FEED_BY_USER_ID, userId);
     }
+
+    public Page<Feed> getPageByUserId(int userId, Cursor after, int limit) {
+        return findPage(GET_FEED_PAGE_BY_USER_ID, FEED_KEYSET, after, limit, userId);
+    }
 }
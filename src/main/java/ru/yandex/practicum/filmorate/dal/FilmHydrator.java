@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.FilmField;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+
+/**
+ * Вторая фаза загрузки фильмов: по уже выбранным базовым строкам одним запросом на связь
+ * догружает жанры и режиссёров. Экземпляры {@link Genre} и {@link Director} переиспользуются
+ * в пределах одной порции фильмов.
+ */
+@Component
+public class FilmHydrator {
+    private static final int BATCH_SIZE = 500;
+    private static final String GET_GENRES_BY_FILM_IDS_QUERY = """
+            SELECT fg.film_id, g.genre_id, g.name
+            FROM film_genres AS fg
+            JOIN genres AS g ON fg.genre_id = g.genre_id
+            WHERE fg.film_id IN (%s)
+            ORDER BY fg.film_id, g.genre_id
+            """;
+    private static final String GET_DIRECTORS_BY_FILM_IDS_QUERY = """
+            SELECT fd.film_id, d.director_id, d.name
+            FROM film_directors AS fd
+            JOIN directors AS d ON fd.director_id = d.director_id
+            WHERE fd.film_id IN (%s)
+            ORDER BY fd.film_id, d.director_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public FilmHydrator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Film> hydrate(List<Film> films) {
+        return hydrate(films, FilmField.ALL);
+    }
+
+    /**
+     * Догружает только те связи, что попали в {@code fields}: без жанров и режиссёров запросы к
+     * {@code film_genres} и {@code film_directors} не выполняются вовсе.
+     */
+    public List<Film> hydrate(List<Film> films, Set<FilmField> fields) {
+        boolean withGenres = fields.contains(FilmField.GENRES);
+        boolean withDirectors = fields.contains(FilmField.DIRECTORS);
+        if (films.isEmpty() || !withGenres && !withDirectors) {
+            return films;
+        }
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        List<Integer> ids = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            if (withGenres) {
+                loadGenres(filmsById, batch);
+            }
+            if (withDirectors) {
+                loadDirectors(filmsById, batch);
+            }
+        }
+        return films;
+    }
+
+    private void loadGenres(Map<Integer, Film> filmsById, List<Integer> ids) {
+        Map<Integer, Genre> genres = new HashMap<>();
+        jdbcTemplate.query(String.format(GET_GENRES_BY_FILM_IDS_QUERY, placeholders(ids.size())), rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            int genreId = rs.getInt("genre_id");
+            Genre genre = genres.get(genreId);
+            if (genre == null) {
+                genre = new Genre(genreId, rs.getString("name"));
+                genres.put(genreId, genre);
+            }
+            film.getGenres().add(genre);
+        }, ids.toArray());
+    }
+
+    private void loadDirectors(Map<Integer, Film> filmsById, List<Integer> ids) {
+        Map<Integer, Director> directors = new HashMap<>();
+        jdbcTemplate.query(String.format(GET_DIRECTORS_BY_FILM_IDS_QUERY, placeholders(ids.size())), rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            int directorId = rs.getInt("director_id");
+            Director director = directors.get(directorId);
+            if (director == null) {
+                director = new Director(directorId, rs.getString("name"));
+                directors.put(directorId, director);
+            }
+            film.getDirectors().add(director);
+        }, ids.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
@@ -3,25 +3,38 @@ package ru.yandex.practicum.filmorate.dal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.dal.mappers.FoundFilmRepository;
+import ru.yandex.practicum.filmorate.dto.FilmField;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.FilmCache;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
 public class FilmRepository extends FoundRepository<Film> {
     private static final String TABLE_NAME = "films";
-    private static final String FIND_ALL_QUERY = """
+    private static final String SELECT_FILMS = """
             SELECT
                 f.film_id AS film_id,
                 f.name AS film_name,
@@ -29,150 +42,56 @@ public class FilmRepository extends FoundRepository<Film> {
                 f.release_date AS film_release_date,
                 f.duration AS film_duration,
                 r.rating_id AS rating_id,
-                r.name AS rating_name,
-                g.genre_id AS genre_id,
-                g.name AS genre_name,
-                d.director_id AS director_id,
-                d.name AS director_name
+                r.name AS rating_name
             FROM films AS f
             LEFT JOIN ratings AS r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-            LEFT JOIN directors AS d ON fd.director_id = d.director_id
-            ORDER BY f.film_id""";
+            """;
+    private static final String FIND_ALL_QUERY = SELECT_FILMS + "ORDER BY f.film_id";
 
-    private static final String FIND_BY_ID_QUERY = """
-            SELECT
-                f.film_id AS film_id,
-                f.name AS film_name,
-                f.description AS film_description,
-                f.release_date AS film_release_date,
-                f.duration AS film_duration,
-                r.rating_id AS rating_id,
-                r.name AS rating_name,
-                g.genre_id AS genre_id,
-                g.name AS genre_name,
-                d.director_id AS director_id,
-                d.name AS director_name
-            FROM films AS f
-            LEFT JOIN ratings AS r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-            LEFT JOIN directors AS d ON fd.director_id = d.director_id
-            WHERE f.film_id = ?""";
+    private static final String FIND_PAGE_QUERY = SELECT_FILMS + "WHERE 1=1 %s";
+
+    private static final String FIND_BY_ID_QUERY = SELECT_FILMS + "WHERE f.film_id = ?";
+
+    private static final String FIND_ID_RANGE_QUERY = SELECT_FILMS + """
+            WHERE f.film_id BETWEEN ? AND ?
+            ORDER BY f.film_id
+            """;
+
+    private static final String GET_ID_BOUNDS_QUERY = "SELECT MIN(film_id), MAX(film_id), COUNT(*) FROM films";
 
     private static final String GET_POPULAR_FILM_IDS_QUERY = """
-            SELECT f.film_id
-            FROM films f
-            LEFT JOIN film_likes fl ON f.film_id = fl.film_id
+            SELECT fs.film_id AS film_id, fs.likes_count AS likes_count
+            FROM film_stats fs
+            JOIN films f ON f.film_id = fs.film_id
             WHERE 1=1
             %s
-            GROUP BY f.film_id
-            ORDER BY COUNT(fl.user_id) DESC
-            LIMIT ?
+            %s
             """;
 
-    private static final String GET_FILMS_BY_IDS_QUERY = """
-            SELECT f.film_id AS film_id,
-                   f.name AS film_name,
-                   f.description AS film_description,
-                   f.release_date AS film_release_date,
-                   f.duration AS film_duration,
-                   r.rating_id AS rating_id,
-                   r.name AS rating_name,
-                   g.genre_id AS genre_id,
-                   g.name AS genre_name,
-                   d.director_id AS director_id,
-                   d.name AS director_name
-            FROM films f
-            LEFT JOIN ratings r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-            LEFT JOIN genres g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors fd ON f.film_id = fd.film_id
-            LEFT JOIN directors d ON fd.director_id = d.director_id
+    private static final String GET_FILMS_BY_IDS_QUERY = SELECT_FILMS + """
             WHERE f.film_id IN (%s)
             ORDER BY f.film_id
             """;
 
-    private static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES = """
-            SELECT f.film_id AS film_id, f.name AS film_name, f.description AS film_description,
-                   f.release_date AS film_release_date, f.duration AS film_duration,
-                   r.rating_id AS rating_id, r.name AS rating_name,
-                   d.director_id AS director_id, d.name AS director_name,
-                   g.genre_id AS genre_id, g.name AS genre_name,
-                   COUNT(fl.user_id) AS likes_count
-            FROM films f
+    private static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES = SELECT_FILMS + """
             JOIN film_directors fd ON f.film_id = fd.film_id
-            JOIN directors d ON fd.director_id = d.director_id
-            LEFT JOIN ratings r ON f.rating_id = r.rating_id
-            LEFT JOIN film_likes fl ON f.film_id = fl.film_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
+            LEFT JOIN film_stats fs ON fs.film_id = f.film_id
             WHERE fd.director_id = ?
-            GROUP BY f.film_id, r.rating_id, r.name, d.director_id, d.name
-            ORDER BY likes_count DESC
+            ORDER BY fs.likes_count DESC NULLS LAST, f.film_id
             """;
 
-    private static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR = """
-            SELECT f.film_id AS film_id, f.name AS film_name, f.description AS film_description,
-                   f.release_date AS film_release_date, f.duration AS film_duration,
-                   r.rating_id AS rating_id, r.name AS rating_name,
-                   d.director_id AS director_id, d.name AS director_name,
-                   g.genre_id AS genre_id, g.name AS genre_name
-            FROM films f
+    private static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR = SELECT_FILMS + """
             JOIN film_directors fd ON f.film_id = fd.film_id
-            JOIN directors d ON fd.director_id = d.director_id
-            LEFT JOIN ratings r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
             WHERE fd.director_id = ?
-            ORDER BY f.release_date
+            ORDER BY f.release_date, f.film_id
             """;
 
-    private static final String SEARCH_BY_TITLE_QUERY = """
-            SELECT
-                f.film_id AS film_id,
-                f.name AS film_name,
-                f.description AS film_description,
-                f.release_date AS film_release_date,
-                f.duration AS film_duration,
-                r.rating_id AS rating_id,
-                r.name AS rating_name,
-                g.genre_id AS genre_id,
-                g.name AS genre_name,
-                d.director_id AS director_id,
-                d.name AS director_name
-            FROM films AS f
-            LEFT JOIN ratings AS r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-            LEFT JOIN directors AS d ON fd.director_id = d.director_id
+    private static final String SEARCH_BY_TITLE_QUERY = SELECT_FILMS + """
             WHERE LOWER(f.name) LIKE LOWER(?)
             ORDER BY f.film_id
             """;
 
-    private static final String SEARCH_BY_DIRECTOR_QUERY = """
-            SELECT
-                f.film_id AS film_id,
-                f.name AS film_name,
-                f.description AS film_description,
-                f.release_date AS film_release_date,
-                f.duration AS film_duration,
-                r.rating_id AS rating_id,
-                r.name AS rating_name,
-                g.genre_id AS genre_id,
-                g.name AS genre_name,
-                d.director_id AS director_id,
-                d.name AS director_name
-            FROM films AS f
-            LEFT JOIN ratings AS r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-            LEFT JOIN directors AS d ON fd.director_id = d.director_id
+    private static final String SEARCH_BY_DIRECTOR_QUERY = SELECT_FILMS + """
             WHERE f.film_id IN (
                 SELECT fd2.film_id FROM film_directors fd2
                 JOIN directors d2 ON fd2.director_id = d2.director_id
@@ -181,86 +100,28 @@ public class FilmRepository extends FoundRepository<Film> {
             ORDER BY f.film_id
             """;
 
-    private static final String SEARCH_BY_TITLE_AND_DIRECTOR_QUERY = """
-            SELECT
-                f.film_id AS film_id,
-                f.name AS film_name,
-                f.description AS film_description,
-                f.release_date AS film_release_date,
-                f.duration AS film_duration,
-                r.rating_id AS rating_id,
-                r.name AS rating_name,
-                g.genre_id AS genre_id,
-                g.name AS genre_name,
-                d.director_id AS director_id,
-                d.name AS director_name,
-                COUNT(fl.user_id) AS likes_count
-            FROM films AS f
-            LEFT JOIN ratings AS r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-            LEFT JOIN directors AS d ON fd.director_id = d.director_id
-            LEFT JOIN film_likes AS fl ON f.film_id = fl.film_id
+    private static final String SEARCH_BY_TITLE_AND_DIRECTOR_QUERY = SELECT_FILMS + """
+            LEFT JOIN film_stats fs ON fs.film_id = f.film_id
             WHERE LOWER(f.name) LIKE LOWER(?)
                OR f.film_id IN (
                     SELECT fd2.film_id FROM film_directors fd2
                     JOIN directors d2 ON fd2.director_id = d2.director_id
                     WHERE LOWER(d2.name) LIKE LOWER(?)
                )
-            GROUP BY f.film_id, r.rating_id, r.name, g.genre_id, g.name, d.director_id, d.name
-            ORDER BY likes_count DESC
+            ORDER BY fs.likes_count DESC NULLS LAST, f.film_id
             """;
 
-    private static final String GET_LIKED_FILMS_BY_USER_QUERY = """
-            SELECT
-                f.film_id AS film_id,
-                f.name AS film_name,
-                f.description AS film_description,
-                f.release_date AS film_release_date,
-                f.duration AS film_duration,
-                r.rating_id AS rating_id,
-                r.name AS rating_name,
-                g.genre_id AS genre_id,
-                g.name AS genre_name,
-                d.director_id AS director_id,
-                d.name AS director_name
-            FROM films AS f
+    private static final String GET_LIKED_FILMS_BY_USER_QUERY = SELECT_FILMS + """
             JOIN film_likes AS fl ON f.film_id = fl.film_id
-            LEFT JOIN ratings AS r ON f.rating_id = r.rating_id
-            LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-            LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-            LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-            LEFT JOIN directors AS d ON fd.director_id = d.director_id
             WHERE fl.user_id = ?
             ORDER BY f.film_id
             """;
 
-    private static final String GET_COMMON_FILMS_WITH_FRIEND_SORTED_BY_LIKES = """
-                SELECT
-                            f.film_id AS film_id,
-                            f.name AS film_name,
-                            f.description AS film_description,
-                            f.release_date AS film_release_date,
-                            f.duration AS film_duration,
-                            r.rating_id AS rating_id,
-                            r.name AS rating_name,
-                            g.genre_id AS genre_id,
-                            g.name AS genre_name,
-                            d.director_id AS director_id,
-                            d.name AS director_name
-                        FROM films AS f
-                        JOIN film_likes AS fl ON f.film_id = fl.film_id
-                        LEFT JOIN ratings AS r ON f.rating_id = r.rating_id
-                        LEFT JOIN film_genres AS fg ON f.film_id = fg.film_id
-                        LEFT JOIN genres AS g ON fg.genre_id = g.genre_id
-                        LEFT JOIN film_directors AS fd ON f.film_id = fd.film_id
-                        LEFT JOIN directors AS d ON fd.director_id = d.director_id
-                JOIN film_likes fl1 ON fl1.film_id = f.film_id AND fl1.user_id = ?
-                JOIN film_likes fl2 ON fl2.film_id = f.film_id AND fl2.user_id = ?
-                LEFT JOIN film_likes fl_all ON fl_all.film_id = f.film_id
-                GROUP BY f.film_id
-                ORDER BY COUNT(fl_all.user_id) DESC
+    private static final String GET_COMMON_FILMS_WITH_FRIEND_SORTED_BY_LIKES = SELECT_FILMS + """
+            JOIN film_likes fl1 ON fl1.film_id = f.film_id AND fl1.user_id = ?
+            JOIN film_likes fl2 ON fl2.film_id = f.film_id AND fl2.user_id = ?
+            LEFT JOIN film_stats fs ON fs.film_id = f.film_id
+            ORDER BY fs.likes_count DESC NULLS LAST, f.film_id
             """;
     private static final String DELETE_FILM_QUERY = "DELETE FROM " + TABLE_NAME + " WHERE film_id = ?";
     private static final String DELETE_FILM_GENRES_QUERY = "DELETE FROM film_genres WHERE film_id = ?";
@@ -274,26 +135,146 @@ public class FilmRepository extends FoundRepository<Film> {
             "UPDATE films " +
             "SET name = ?, description = ?, release_date = ?, duration = ?, rating_id = ? " +
             "WHERE film_id = ?";
-    private static final String INSERT_FILM_LIKES_QUERY = "INSERT INTO film_likes(film_id, user_id) " + "VALUES(?, ?)";
+    private static final String INSERT_FILM_LIKE_IF_ABSENT_QUERY = """
+            INSERT INTO film_likes(film_id, user_id)
+            SELECT CAST(? AS INTEGER), CAST(? AS INTEGER)
+            WHERE NOT EXISTS (SELECT 1 FROM film_likes WHERE film_id = ? AND user_id = ?)
+            """;
     private static final String DELETE_FROM_FILM_LIKES_QUERY = "DELETE FROM film_likes " + "WHERE film_id = ?" + " AND user_id = ?";
     private static final String GET_FILM_LIKES_QUERY = "SELECT user_id FROM film_likes " + "WHERE film_id = ?";
+    private static final String GET_LIKE_COUNTS_QUERY = "SELECT film_id, COUNT(*) FROM film_likes GROUP BY film_id";
+    private static final String GET_LIKE_COUNT_QUERY = "SELECT COUNT(*) FROM film_likes WHERE film_id = ?";
+    private static final String INSERT_FILM_STATS_QUERY = "INSERT INTO film_stats(film_id) VALUES (?)";
+    private static final String ADD_FILM_LIKES_QUERY =
+            "UPDATE film_stats SET likes_count = likes_count + ? WHERE film_id = ?";
+    private static final String GET_ALL_LIKES_QUERY = "SELECT film_id, user_id FROM film_likes";
+    private static final String GET_LIKES_SINCE_QUERY =
+            "SELECT film_id, created_at FROM film_likes WHERE created_at >= ?";
+    private static final String GET_LIKED_FILM_IDS_QUERY = "SELECT film_id FROM film_likes WHERE user_id = ?";
+    private static final String GET_POPULAR_AMONG_FRIENDS_QUERY = "SELECT fl.film_id FROM friendships fr " +
+                                                                  "JOIN film_likes fl ON fl.user_id = fr.friend_id " +
+                                                                  "LEFT JOIN film_stats fs ON fs.film_id = fl.film_id " +
+                                                                  "WHERE fr.user_id = ? " +
+                                                                  "GROUP BY fl.film_id, fs.likes_count " +
+                                                                  "ORDER BY COUNT(*) DESC, fs.likes_count DESC NULLS LAST, fl.film_id " +
+                                                                  "LIMIT ?";
+    private static final Keyset<Film> FILM_KEYSET = Keyset.byId("f.film_id", Film::getId);
+    private static final Keyset<FilmLikes> POPULAR_KEYSET = new Keyset<>("fs.likes_count", "fs.film_id", true,
+            FilmLikes::likes, FilmLikes::filmId);
+    private static final RowMapper<FilmLikes> FILM_LIKES_ROW_MAPPER = (rs, rowNum) ->
+            new FilmLikes(rs.getInt("film_id"), rs.getLong("likes_count"));
     //    private static final Logger logger = LoggerFactory.getLogger(FilmRepository.class);
     private final FoundFilmRepository foundFilmRepository;
+    private final FilmHydrator filmHydrator;
+    private final FilmCache filmCache;
+    private final ParallelFilmLoader parallelFilmLoader;
+    private final DataVersions dataVersions;
 
     @Autowired
-    public FilmRepository(JdbcTemplate jdbcTemplate, FoundFilmRepository foundFilmRepository) {
+    public FilmRepository(JdbcTemplate jdbcTemplate, FoundFilmRepository foundFilmRepository,
+                          FilmHydrator filmHydrator, FilmCache filmCache, ParallelFilmLoader parallelFilmLoader,
+                          DataVersions dataVersions) {
         super(jdbcTemplate, new FilmRowMapper());
         this.foundFilmRepository = foundFilmRepository;
+        this.filmHydrator = filmHydrator;
+        this.filmCache = filmCache;
+        this.parallelFilmLoader = parallelFilmLoader;
+        this.dataVersions = dataVersions;
     }
 
     public List<Film> getAll() {
+        return getAll(FilmField.ALL);
+    }
+
+    public List<Film> getAll(Set<FilmField> fields) {
         log.debug("Запрос на получение всех строк таблицы films");
-        return findMany(FIND_ALL_QUERY, foundFilmRepository);
+        long[] bounds = jdbcTemplate.queryForObject(GET_ID_BOUNDS_QUERY, (rs, rowNum) ->
+                new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)});
+        if (bounds == null || !parallelFilmLoader.shouldPartition(bounds[2])) {
+            return findFilms(FIND_ALL_QUERY, fields);
+        }
+        int partitionSize = parallelFilmLoader.getPartitionSize();
+        long partitions = (bounds[2] + partitionSize - 1) / partitionSize;
+        long step = (bounds[1] - bounds[0]) / partitions + 1;
+        log.debug("Загрузка {} фильмов {} диапазонами id по {}", bounds[2], partitions, step);
+        List<Callable<List<Film>>> ranges = new ArrayList<>();
+        for (long from = bounds[0]; from <= bounds[1]; from += step) {
+            long to = Math.min(from + step - 1, bounds[1]);
+            long rangeFrom = from;
+            ranges.add(() -> findFilms(FIND_ID_RANGE_QUERY, fields, rangeFrom, to));
+        }
+        return parallelFilmLoader.loadAll(ranges);
+    }
+
+    /**
+     * Читает все фильмы однонаправленным курсором порциями по {@code fetchSize} строк и отдаёт каждую
+     * порцию потребителю сразу после догрузки жанров и режиссёров. В памяти держится не больше одной порции.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(int fetchSize, Consumer<List<Film>> chunkConsumer) {
+        log.debug("Запрос на потоковую выгрузку всех строк таблицы films");
+        Map<Integer, Rating> ratings = new HashMap<>();
+        List<Film> chunk = new ArrayList<>(fetchSize);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(FIND_ALL_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            chunk.add(foundFilmRepository.mapFilm(rs, ratings));
+            if (chunk.size() >= fetchSize) {
+                chunkConsumer.accept(filmHydrator.hydrate(new ArrayList<>(chunk)));
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            chunkConsumer.accept(filmHydrator.hydrate(chunk));
+        }
+    }
+
+    public Page<Film> getPage(Cursor after, int limit, Set<FilmField> fields) {
+        log.debug("Запрос на получение страницы таблицы films после {}", after);
+        Page<Film> page = findPage(FIND_PAGE_QUERY, foundFilmRepository, FILM_KEYSET, after, limit);
+        filmHydrator.hydrate(page.items(), fields);
+        return page;
+    }
+
+    public List<Film> getByIds(List<Integer> filmIds) {
+        return getByIds(filmIds, FilmField.ALL);
+    }
+
+    public List<Film> getByIds(List<Integer> filmIds, Set<FilmField> fields) {
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Film> films = new HashMap<>();
+        if (parallelFilmLoader.shouldPartition(filmIds.size())) {
+            int partitionSize = parallelFilmLoader.getPartitionSize();
+            List<Callable<List<Film>>> partitions = new ArrayList<>();
+            for (int from = 0; from < filmIds.size(); from += partitionSize) {
+                List<Integer> partition = filmIds.subList(from, Math.min(from + partitionSize, filmIds.size()));
+                partitions.add(() -> findFilmsByIds(partition, fields));
+            }
+            parallelFilmLoader.loadAll(partitions).forEach(film -> films.put(film.getId(), film));
+        } else {
+            findFilmsByIds(filmIds, fields).forEach(film -> films.put(film.getId(), film));
+        }
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     public Optional<Film> getById(int filmId) {
+        Film cached = filmCache.get(filmId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
         log.debug("Запрос на получение строки таблицы films с id = {}", filmId);
-        return findOne(FIND_BY_ID_QUERY, foundFilmRepository, filmId);
+        long generation = filmCache.generation();
+        Optional<Film> film = findFilms(FIND_BY_ID_QUERY, FilmField.ALL, filmId).stream().findFirst();
+        film.ifPresent(found -> filmCache.put(found, generation));
+        return film;
     }
 
     public Film create(Film film) {
@@ -307,6 +288,7 @@ public class FilmRepository extends FoundRepository<Film> {
         );
         log.debug("Получен новый id = {}", id);
         film.setId(id);
+        jdbcTemplate.update(INSERT_FILM_STATS_QUERY, id);
         if (film.getGenres() != null) {
             jdbcTemplate.batchUpdate(INSERT_FILM_GENRE_QUERY,
                     film.getGenres(),
@@ -333,6 +315,7 @@ public class FilmRepository extends FoundRepository<Film> {
                     }
             );
         }
+        dataVersions.bump(DataVersions.Table.FILMS);
         return film;
     }
 
@@ -372,45 +355,75 @@ public class FilmRepository extends FoundRepository<Film> {
                     }
             );
         }
+        filmCache.invalidate(film.getId());
+        dataVersions.bump(DataVersions.Table.FILMS);
         return film;
     }
 
 
-    public void putLike(int filmId, int userId) {
-        log.debug("Запрос на вставку строки в таблицу film_likes");
-        insert(INSERT_FILM_LIKES_QUERY, filmId, userId);
-        log.debug("Добавлена строка в таблицу film_likes: film_id = {}, user_id = {}", filmId, userId);
+    /**
+     * Идемпотентно добавляет лайки одним пакетом: уже существующие пары пропускаются. Если ту же пару
+     * одновременно вставляет другая транзакция, бросается {@link org.springframework.dao.DuplicateKeyException}.
+     *
+     * @return лайки, которые действительно были добавлены
+     */
+    public List<FilmLike> putLikes(List<FilmLike> likes) {
+        if (likes.isEmpty()) {
+            return List.of();
+        }
+        log.debug("Запрос на вставку {} строк в таблицу film_likes", likes.size());
+        List<FilmLike> added = applied(likes, jdbcTemplate.batchUpdate(INSERT_FILM_LIKE_IF_ABSENT_QUERY, likes,
+                likes.size(), (ps, like) -> {
+                    ps.setInt(1, like.filmId());
+                    ps.setInt(2, like.userId());
+                    ps.setInt(3, like.filmId());
+                    ps.setInt(4, like.userId());
+                }));
+        adjustLikeCounts(added, 1);
+        return added;
     }
 
-    public void removeLike(int filmId, int userId) {
-        log.debug("Запрос на удаление строки из таблицы film_likes");
-        update(DELETE_FROM_FILM_LIKES_QUERY, filmId, userId);
-        log.debug("Удалена строка из таблицы film_likes: film_id = {}, user_id = {}", filmId, userId);
+    /**
+     * Идемпотентно удаляет лайки одним пакетом.
+     *
+     * @return лайки, которые действительно были удалены
+     */
+    public List<FilmLike> removeLikes(List<FilmLike> likes) {
+        if (likes.isEmpty()) {
+            return List.of();
+        }
+        log.debug("Запрос на удаление {} строк из таблицы film_likes", likes.size());
+        List<FilmLike> removed = applied(likes, jdbcTemplate.batchUpdate(DELETE_FROM_FILM_LIKES_QUERY, likes,
+                likes.size(), (ps, like) -> {
+                    ps.setInt(1, like.filmId());
+                    ps.setInt(2, like.userId());
+                }));
+        adjustLikeCounts(removed, -1);
+        return removed;
     }
 
-    public List<Film> getPopular(int count, Integer genreId, Integer year) {
+    /**
+     * Самые популярные фильмы после курсора. Больше {@link #MAX_PAGE_SIZE} фильмов набираются несколькими
+     * keyset-страницами подряд через {@link #findPages}.
+     */
+    public Page<Film> getPopular(int count, Integer genreId, Integer year, Cursor after, Set<FilmField> fields) {
         StringBuilder filter = new StringBuilder();
         List<Object> params = new ArrayList<>();
         if (year != null) {
-            filter.append(" AND EXTRACT(YEAR FROM f.release_date) = ?");
-            params.add(year);
+            filter.append(" AND f.release_date >= ? AND f.release_date < ?");
+            params.add(LocalDate.of(year, 1, 1));
+            params.add(LocalDate.of(year + 1, 1, 1));
         }
         if (genreId != null) {
             filter.append(" AND EXISTS (SELECT 1 FROM film_genres fg WHERE fg.film_id = f.film_id " +
                           "AND fg.genre_id = ?)");
             params.add(genreId);
         }
-        String filmIdsQuery = String.format(GET_POPULAR_FILM_IDS_QUERY, filter);
-        params.add(count);
-        List<Integer> filmIds = jdbcTemplate.query(filmIdsQuery, (rs, rowNum) ->
-                rs.getInt("film_id"), params.toArray());
-        if (filmIds.isEmpty()) {
-            return Collections.emptyList();
-        }
-        String inSql = filmIds.stream().map(String::valueOf).collect(Collectors.joining(","));
-        String filmsQuery = String.format(GET_FILMS_BY_IDS_QUERY, inSql);
-
-        return findMany(filmsQuery, foundFilmRepository);
+        String filmIdsQuery = String.format(GET_POPULAR_FILM_IDS_QUERY, filter, "%s");
+        Page<FilmLikes> filmIds = findPages(filmIdsQuery, new RowMapperResultSetExtractor<>(FILM_LIKES_ROW_MAPPER),
+                POPULAR_KEYSET, after, count, params.toArray());
+        List<Film> films = getByIds(filmIds.items().stream().map(FilmLikes::filmId).toList(), fields);
+        return new Page<>(films, filmIds.next());
     }
 
     public List<Integer> getLikesUserId(int filmId) {
@@ -418,41 +431,77 @@ public class FilmRepository extends FoundRepository<Film> {
         return super.findManyInts(GET_FILM_LIKES_QUERY, filmId);
     }
 
+    public Map<Integer, Long> getLikeCounts() {
+        log.debug("Запрос на получение числа лайков всех фильмов");
+        Map<Integer, Long> counts = new HashMap<>();
+        jdbcTemplate.query(GET_LIKE_COUNTS_QUERY, rs -> {
+            counts.put(rs.getInt(1), rs.getLong(2));
+        });
+        return counts;
+    }
+
+    public long getLikeCount(int filmId) {
+        Long count = jdbcTemplate.queryForObject(GET_LIKE_COUNT_QUERY, Long.class, filmId);
+        return count == null ? 0 : count;
+    }
+
+    public void forEachLike(Consumer<FilmLike> consumer) {
+        log.debug("Запрос на чтение всех строк таблицы film_likes");
+        jdbcTemplate.query(GET_ALL_LIKES_QUERY, (RowCallbackHandler) rs ->
+                consumer.accept(new FilmLike(rs.getInt("film_id"), rs.getInt("user_id"))));
+    }
+
+    public void forEachLikeSince(Instant since, BiConsumer<Integer, Instant> consumer) {
+        log.debug("Запрос на чтение строк таблицы film_likes начиная с {}", since);
+        jdbcTemplate.query(GET_LIKES_SINCE_QUERY, (RowCallbackHandler) rs ->
+                consumer.accept(rs.getInt("film_id"), rs.getTimestamp("created_at").toInstant()),
+                Timestamp.from(since));
+    }
+
+    public List<Integer> getPopularAmongFriendsIds(int userId, int count) {
+        log.debug("Запрос на получение фильмов, популярных у друзей пользователя с id = {}", userId);
+        return findManyInts(GET_POPULAR_AMONG_FRIENDS_QUERY, userId, count);
+    }
+
+    public List<Integer> getLikedFilmIds(int userId) {
+        return findManyInts(GET_LIKED_FILM_IDS_QUERY, userId);
+    }
+
     public List<Film> getFilmsByDirectorSortedByLikes(int directorId) {
-        return findMany(GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES, foundFilmRepository, directorId);
+        return findFilms(GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES, FilmField.ALL, directorId);
     }
 
     public List<Film> getFilmsByDirectorSortedByYear(int directorId) {
-        return findMany(GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR, foundFilmRepository, directorId);
+        return findFilms(GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR, FilmField.ALL, directorId);
     }
 
-    public List<Film> searchFilmsByTitle(String query) {
+    public List<Film> searchFilmsByTitle(String query, Set<FilmField> fields) {
         log.debug("Поиск фильмов по названию: {}", query);
         String searchPattern = "%" + query + "%";
-        return findMany(SEARCH_BY_TITLE_QUERY, foundFilmRepository, searchPattern);
+        return findFilms(SEARCH_BY_TITLE_QUERY, fields, searchPattern);
     }
 
-    public List<Film> searchFilmsByDirector(String query) {
+    public List<Film> searchFilmsByDirector(String query, Set<FilmField> fields) {
         log.debug("Поиск фильмов по режиссеру: {}", query);
         String searchPattern = "%" + query + "%";
-        return findMany(SEARCH_BY_DIRECTOR_QUERY, foundFilmRepository, searchPattern);
+        return findFilms(SEARCH_BY_DIRECTOR_QUERY, fields, searchPattern);
     }
 
-    public List<Film> searchFilmsByTitleAndDirector(String query) {
+    public List<Film> searchFilmsByTitleAndDirector(String query, Set<FilmField> fields) {
         log.debug("Поиск фильмов по названию и режиссеру: {}", query);
         String searchPattern = "%" + query + "%";
-        return findMany(SEARCH_BY_TITLE_AND_DIRECTOR_QUERY, foundFilmRepository, searchPattern, searchPattern);
+        return findFilms(SEARCH_BY_TITLE_AND_DIRECTOR_QUERY, fields, searchPattern, searchPattern);
     }
 
     public List<Film> getLikedFilmsByUser(int userId) {
         log.debug("Запрос на получение всех фильмов, лайкнутых пользователем с id = {}", userId);
-        return findMany(GET_LIKED_FILMS_BY_USER_QUERY, foundFilmRepository, userId);
+        return findFilms(GET_LIKED_FILMS_BY_USER_QUERY, FilmField.ALL, userId);
     }
 
     public List<Film> getCommonFilmsWithFriend(int userId, int friendId) {
         log.debug("Запрос на получение общих с другом фильмов. Айди пользователя = {}. Айди друга = {}", userId,
                 friendId);
-        return findMany(GET_COMMON_FILMS_WITH_FRIEND_SORTED_BY_LIKES, foundFilmRepository, userId, friendId);
+        return findFilms(GET_COMMON_FILMS_WITH_FRIEND_SORTED_BY_LIKES, FilmField.ALL, userId, friendId);
     }
 
     public void deleteById(int filmId) {
@@ -463,6 +512,49 @@ public class FilmRepository extends FoundRepository<Film> {
         update(DELETE_FILM_DIRECTORS_QUERY, filmId);
 
         update(DELETE_FILM_QUERY, filmId);
+        filmCache.invalidate(filmId);
+        dataVersions.bump(DataVersions.Table.FILMS);
+        dataVersions.bump(DataVersions.Table.LIKES);
         log.debug("Фильм с id = {} удален", filmId);
     }
+
+    private static List<FilmLike> applied(List<FilmLike> likes, int[][] batches) {
+        List<FilmLike> applied = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : batches) {
+            for (int rows : batch) {
+                if (rows > 0) {
+                    applied.add(likes.get(index));
+                }
+                index++;
+            }
+        }
+        return applied;
+    }
+
+    private void adjustLikeCounts(List<FilmLike> likes, int sign) {
+        if (likes.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> deltas = new HashMap<>();
+        likes.forEach(like -> deltas.merge(like.filmId(), sign, Integer::sum));
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(deltas.entrySet());
+        jdbcTemplate.batchUpdate(ADD_FILM_LIKES_QUERY, entries, entries.size(), (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setInt(2, entry.getKey());
+        });
+        dataVersions.bump(DataVersions.Table.LIKES);
+    }
+
+    private List<Film> findFilmsByIds(List<Integer> filmIds, Set<FilmField> fields) {
+        String placeholders = String.join(",", Collections.nCopies(filmIds.size(), "?"));
+        return findFilms(String.format(GET_FILMS_BY_IDS_QUERY, placeholders), fields, filmIds.toArray());
+    }
+
+    private List<Film> findFilms(String query, Set<FilmField> fields, Object... params) {
+        return filmHydrator.hydrate(findMany(query, foundFilmRepository, params), fields);
+    }
+
+    private record FilmLikes(int filmId, long likes) {
+    }
 }
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Сверка денормализованной таблицы {@code film_stats} с исходными данными. Счётчики обновляются
+ * в тех же транзакциях, что и записи в {@code film_likes} и {@code reviews}; сверка лишь чинит
+ * расхождения, оставшиеся после ручных правок базы или сбоев.
+ */
+@Slf4j
+@Repository
+public class FilmStatsRepository {
+    private static final String INSERT_MISSING_QUERY = """
+            INSERT INTO film_stats (film_id)
+            SELECT f.film_id FROM films f
+            WHERE NOT EXISTS (SELECT 1 FROM film_stats fs WHERE fs.film_id = f.film_id)
+            """;
+    private static final String FIND_DRIFTED_QUERY = """
+            SELECT fs.film_id, fs.likes_count, fs.reviews_count, fs.reviews_useful,
+                   COALESCE(l.likes_count, 0) AS actual_likes,
+                   COALESCE(r.reviews_count, 0) AS actual_reviews,
+                   COALESCE(r.reviews_useful, 0) AS actual_useful
+            FROM film_stats fs
+            LEFT JOIN (SELECT film_id, COUNT(*) AS likes_count FROM film_likes GROUP BY film_id) l
+                   ON l.film_id = fs.film_id
+            LEFT JOIN (SELECT film_id, COUNT(*) AS reviews_count, SUM(useful) AS reviews_useful
+                       FROM reviews GROUP BY film_id) r
+                   ON r.film_id = fs.film_id
+            WHERE fs.likes_count <> COALESCE(l.likes_count, 0)
+               OR fs.reviews_count <> COALESCE(r.reviews_count, 0)
+               OR fs.reviews_useful <> COALESCE(r.reviews_useful, 0)
+            """;
+    private static final String REPAIR_QUERY = """
+            UPDATE film_stats SET likes_count = ?, reviews_count = ?, reviews_useful = ?
+            WHERE film_id = ? AND likes_count = ? AND reviews_count = ? AND reviews_useful = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FilmStatsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Добавляет недостающие строки и исправляет расходящиеся счётчики. Строка исправляется, только если
+     * она не изменилась с момента чтения, — иначе её подберёт следующая сверка.
+     *
+     * @return число добавленных и исправленных строк
+     */
+    public int reconcile() {
+        int inserted = jdbcTemplate.update(INSERT_MISSING_QUERY);
+        List<Drift> drifted = jdbcTemplate.query(FIND_DRIFTED_QUERY, (rs, rowNum) -> new Drift(
+                rs.getInt("film_id"),
+                rs.getLong("likes_count"), rs.getLong("reviews_count"), rs.getLong("reviews_useful"),
+                rs.getLong("actual_likes"), rs.getLong("actual_reviews"), rs.getLong("actual_useful")));
+        int repaired = 0;
+        for (Drift drift : drifted) {
+            log.warn("Расхождение film_stats для film_id = {}: лайки {} -> {}, отзывы {} -> {}, полезность {} -> {}",
+                    drift.filmId(), drift.likes(), drift.actualLikes(), drift.reviews(), drift.actualReviews(),
+                    drift.useful(), drift.actualUseful());
+            repaired += jdbcTemplate.update(REPAIR_QUERY,
+                    drift.actualLikes(), drift.actualReviews(), drift.actualUseful(),
+                    drift.filmId(), drift.likes(), drift.reviews(), drift.useful());
+        }
+        return inserted + repaired;
+    }
+
+    private record Drift(int filmId, long likes, long reviews, long useful,
+                         long actualLikes, long actualReviews, long actualUseful) {
+    }
+}
@@ -6,10 +6,14 @@ import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +21,7 @@ public class FoundRepository<T> {
     protected final JdbcTemplate jdbcTemplate;
     private final RowMapper<T> rowMapper;
     protected static final Logger log = LoggerFactory.getLogger(FoundRepository.class);
+    public static final int MAX_PAGE_SIZE = 1000;
 
     public FoundRepository(JdbcTemplate jdbcTemplate, RowMapper<T> rowMapper) {
         this.jdbcTemplate = jdbcTemplate;
@@ -86,6 +91,56 @@ public class FoundRepository<T> {
         }
     }
 
+    protected Page<T> findPage(String query, Keyset<T> keyset, Cursor after, int limit, Object... params) {
+        return findPage(query, new RowMapperResultSetExtractor<>(rowMapper), keyset, after, limit, params);
+    }
+
+    /**
+     * Keyset-выборка одной страницы. Запрос не должен содержать ORDER BY и LIMIT, а на месте
+     * условия сдвига по курсору должен содержать {@code %s} (после всех своих параметров).
+     */
+    protected <R> Page<R> findPage(String query, ResultSetExtractor<List<R>> resultSetExtractor, Keyset<R> keyset,
+                                   Cursor after, int limit, Object... params) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        List<Object> args = new ArrayList<>(Arrays.asList(params));
+        String seek = "";
+        if (after != null) {
+            seek = keyset.seekPredicate();
+            args.addAll(keyset.seekParams(after));
+        }
+        args.add(limit + 1);
+        String pageQuery = String.format(query, seek) + keyset.orderBy() + " LIMIT ?";
+        List<R> rows = jdbcTemplate.query(pageQuery, resultSetExtractor, args.toArray());
+        if (rows == null || rows.size() <= limit) {
+            return new Page<>(rows == null ? List.of() : rows, null);
+        }
+        List<R> items = new ArrayList<>(rows.subList(0, limit));
+        return new Page<>(items, keyset.cursorOf(items.getLast()));
+    }
+
+    protected Page<T> findPages(String query, Keyset<T> keyset, Cursor after, int count, Object... params) {
+        return findPages(query, new RowMapperResultSetExtractor<>(rowMapper), keyset, after, count, params);
+    }
+
+    /**
+     * То же, что {@link #findPage}, но {@code count} больше {@link #MAX_PAGE_SIZE} набирается несколькими
+     * страницами подряд, а не отклоняется.
+     */
+    protected <R> Page<R> findPages(String query, ResultSetExtractor<List<R>> resultSetExtractor, Keyset<R> keyset,
+                                    Cursor after, int count, Object... params) {
+        List<R> items = new ArrayList<>();
+        Cursor next = after;
+        do {
+            Page<R> page = findPage(query, resultSetExtractor, keyset, next,
+                    Math.min(count - items.size(), MAX_PAGE_SIZE), params);
+            items.addAll(page.items());
+            next = page.next();
+        } while (next != null && items.size() < count);
+        return new Page<>(items, next);
+    }
+
     protected void newInsert(String query, Object... params) {
         int rowsInserted = jdbcTemplate.update(query, params);
         if (rowsInserted == 0) {
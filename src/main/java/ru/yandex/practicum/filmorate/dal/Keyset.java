@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Описание keyset-сортировки: колонка ключа, колонка id (для разрешения равенства ключей, всегда по
+ * возрастанию) и способ достать ту же пару значений из прочитанной строки.
+ */
+public record Keyset<T>(String sortColumn, String idColumn, boolean descending,
+                        ToLongFunction<T> sortKey, ToIntFunction<T> id) {
+
+    public static <T> Keyset<T> byId(String idColumn, ToIntFunction<T> id) {
+        return new Keyset<>(idColumn, idColumn, false, value -> id.applyAsInt(value), id);
+    }
+
+    String seekPredicate() {
+        if (sortColumn.equals(idColumn)) {
+            return " AND " + idColumn + " > ?";
+        }
+        return " AND (" + sortColumn + (descending ? " < ?" : " > ?") +
+               " OR (" + sortColumn + " = ? AND " + idColumn + " > ?))";
+    }
+
+    List<Object> seekParams(Cursor after) {
+        if (sortColumn.equals(idColumn)) {
+            return List.of(after.id());
+        }
+        return List.of(after.sortKey(), after.sortKey(), after.id());
+    }
+
+    String orderBy() {
+        if (sortColumn.equals(idColumn)) {
+            return " ORDER BY " + idColumn;
+        }
+        return " ORDER BY " + sortColumn + (descending ? " DESC, " : ", ") + idColumn;
+    }
+
+    Cursor cursorOf(T value) {
+        return new Cursor(sortKey.applyAsLong(value), id.applyAsInt(value));
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-выборки. {@code next} равен {@code null}, если следующей страницы нет.
+ */
+public record Page<T>(List<T> items, Cursor next) {
+
+    public <R> Page<R> map(Function<? super T, ? extends R> mapper) {
+        return new Page<>(items.stream().<R>map(mapper).toList(), next);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.dal;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выполняет загрузку частей большой выборки параллельно на ограниченном пуле потоков. Каждая часть
+ * берёт своё соединение из пула, результаты склеиваются в порядке частей.
+ */
+@Component
+public class ParallelFilmLoader {
+    private final int parallelism;
+    private final int partitionSize;
+    private final ExecutorService executor;
+
+    public ParallelFilmLoader(@Value("${filmorate.hydration.parallelism:4}") int parallelism,
+                              @Value("${filmorate.hydration.partition-size:2000}") int partitionSize) {
+        this.parallelism = Math.max(1, parallelism);
+        this.partitionSize = Math.max(1, partitionSize);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "film-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getPartitionSize() {
+        return partitionSize;
+    }
+
+    public boolean shouldPartition(long rows) {
+        return parallelism > 1 && rows > partitionSize;
+    }
+
+    public <T> List<T> loadAll(List<Callable<List<T>>> partitions) {
+        List<T> result = new ArrayList<>();
+        try {
+            for (Future<List<T>> future : executor.invokeAll(partitions)) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Параллельная загрузка фильмов прервана", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Не удалось загрузить фильмы", e.getCause());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -6,7 +6,6 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Review;
 
-import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,9 +13,10 @@ public class ReviewRepository extends FoundRepository<Review> {
 
     private static final String TABLE_NAME = "reviews";
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM " + TABLE_NAME + " WHERE review_id = ?";
-    private static final String FIND_ALL_QUERY = "SELECT * FROM " + TABLE_NAME + " ORDER BY useful DESC LIMIT ?";
-    private static final String FIND_BY_FILM_ID_QUERY = "SELECT * FROM " + TABLE_NAME +
-                                                        " WHERE film_id = ? ORDER BY useful DESC LIMIT ?";
+    private static final String FIND_ALL_QUERY = "SELECT * FROM " + TABLE_NAME + " WHERE 1=1 %s";
+    private static final String FIND_BY_FILM_ID_QUERY = "SELECT * FROM " + TABLE_NAME + " WHERE film_id = ? %s";
+    private static final Keyset<Review> USEFUL_KEYSET = new Keyset<>("useful", "review_id", true,
+            Review::getUseful, Review::getReviewId);
 
     private static final String INSERT_REVIEW_QUERY = "INSERT INTO " + TABLE_NAME +
                                                       " (content, is_positive, user_id, film_id, useful) VALUES (?, ?, ?, ?, ?)";
@@ -41,6 +41,16 @@ public class ReviewRepository extends FoundRepository<Review> {
     private static final String INCREMENT_USEFUL_QUERY = "UPDATE " + TABLE_NAME + " SET useful = useful + 1 WHERE review_id = ?";
     private static final String DECREMENT_USEFUL_QUERY = "UPDATE " + TABLE_NAME + " SET useful = useful - 1 WHERE review_id = ?";
 
+    private static final String ADD_FILM_REVIEW_QUERY = "UPDATE film_stats " +
+                                                        "SET reviews_count = reviews_count + 1, reviews_useful = reviews_useful + ? " +
+                                                        "WHERE film_id = ?";
+    private static final String REMOVE_FILM_REVIEW_QUERY = "UPDATE film_stats " +
+                                                           "SET reviews_count = reviews_count - 1, " +
+                                                           "reviews_useful = reviews_useful - (SELECT useful FROM reviews WHERE review_id = ?) " +
+                                                           "WHERE film_id = (SELECT film_id FROM reviews WHERE review_id = ?)";
+    private static final String ADJUST_FILM_USEFUL_QUERY = "UPDATE film_stats SET reviews_useful = reviews_useful + ? " +
+                                                           "WHERE film_id = (SELECT film_id FROM reviews WHERE review_id = ?)";
+
     @Autowired
     public ReviewRepository(JdbcTemplate jdbcTemplate, RowMapper<Review> rowMapper) {
         super(jdbcTemplate, rowMapper);
@@ -50,12 +60,12 @@ public class ReviewRepository extends FoundRepository<Review> {
         return findOne(FIND_BY_ID_QUERY, reviewId);
     }
 
-    public List<Review> getAll(int count) {
-        return findMany(FIND_ALL_QUERY, count);
+    public Page<Review> getAll(Cursor after, int count) {
+        return findPages(FIND_ALL_QUERY, USEFUL_KEYSET, after, count);
     }
 
-    public List<Review> getByFilmId(int filmId, int count) {
-        return findMany(FIND_BY_FILM_ID_QUERY, filmId, count);
+    public Page<Review> getByFilmId(int filmId, Cursor after, int count) {
+        return findPages(FIND_BY_FILM_ID_QUERY, USEFUL_KEYSET, after, count, filmId);
     }
 
     public Review create(Review review) {
@@ -67,6 +77,7 @@ public class ReviewRepository extends FoundRepository<Review> {
                 review.getUseful()
         );
         review.setReviewId(id);
+        jdbcTemplate.update(ADD_FILM_REVIEW_QUERY, review.getUseful(), review.getFilmId());
         return review;
     }
 
@@ -80,6 +91,7 @@ public class ReviewRepository extends FoundRepository<Review> {
     }
 
     public void delete(int reviewId) {
+        jdbcTemplate.update(REMOVE_FILM_REVIEW_QUERY, reviewId, reviewId);
         update(DELETE_REVIEW_QUERY, reviewId);
     }
 
@@ -91,6 +103,7 @@ public class ReviewRepository extends FoundRepository<Review> {
 
         insert(INSERT_REVIEW_LIKE_QUERY, reviewId, userId);
         update(INCREMENT_USEFUL_QUERY, reviewId);
+        jdbcTemplate.update(ADJUST_FILM_USEFUL_QUERY, 1, reviewId);
     }
 
     public void addDislike(int reviewId, int userId) {
@@ -101,6 +114,7 @@ public class ReviewRepository extends FoundRepository<Review> {
 
         insert(INSERT_REVIEW_DISLIKE_QUERY, reviewId, userId);
         update(DECREMENT_USEFUL_QUERY, reviewId);
+        jdbcTemplate.update(ADJUST_FILM_USEFUL_QUERY, -1, reviewId);
     }
 
     public void removeLike(int reviewId, int userId) {
@@ -109,6 +123,7 @@ public class ReviewRepository extends FoundRepository<Review> {
 
         update(DELETE_REVIEW_LIKE_QUERY, reviewId, userId);
         update(DECREMENT_USEFUL_QUERY, reviewId);
+        jdbcTemplate.update(ADJUST_FILM_USEFUL_QUERY, -1, reviewId);
     }
 
     public void removeDislike(int reviewId, int userId) {
@@ -117,5 +132,6 @@ public class ReviewRepository extends FoundRepository<Review> {
 
         update(DELETE_REVIEW_DISLIKE_QUERY, reviewId, userId);
         update(INCREMENT_USEFUL_QUERY, reviewId);
+        jdbcTemplate.update(ADJUST_FILM_USEFUL_QUERY, 1, reviewId);
     }
 }
\ No newline at end of file
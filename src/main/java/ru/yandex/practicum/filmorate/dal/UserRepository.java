@@ -2,17 +2,25 @@ package ru.yandex.practicum.filmorate.dal;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
-public class UserRepository extends FoundRepository {
+public class UserRepository extends FoundRepository<User> {
     private static final String TABLE_NAME = "users";
     private static final String FIND_ALL_QUERY = "SELECT * FROM " + TABLE_NAME;
+    private static final String FIND_PAGE_QUERY = "SELECT * FROM " + TABLE_NAME + " WHERE 1=1 %s";
     private static final String FIND_BY_ID_QUERY = "SELECT * FROM " + TABLE_NAME + " WHERE user_id = ?";
+    private static final String EXISTS_BY_ID_QUERY = "SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE user_id = ?";
+    private static final String FIND_BY_IDS_QUERY = "SELECT * FROM " + TABLE_NAME + " WHERE user_id IN (%s)";
     private static final String FIND_BY_EMAIL_QUERY = "SELECT * FROM " + TABLE_NAME + " WHERE email = ?";
     private static final String INSERT_QUERY = "INSERT INTO " + TABLE_NAME +
                                                "(email, login, name, birthday)" +
@@ -28,17 +36,24 @@ public class UserRepository extends FoundRepository {
                                                                 "WHERE user_id = ? AND friend_id = ?";
     private static final String FIND_FRIENDSHIP_BETWEEN_USERS = "SELECT id from friendships f where user_id = ? and " +
                                                                 "friend_id = ? and f.status = true";
+    private static final String GET_ALL_FRIENDSHIPS_QUERY = "SELECT user_id, friend_id FROM friendships";
     private static final String DELETE_USER_QUERY = "DELETE FROM " + TABLE_NAME + " WHERE user_id = ?";
     private static final String DELETE_USER_FRIENDSHIPS_QUERY = "DELETE FROM friendships WHERE user_id = ? OR friend_id = ?";
     private static final String DELETE_USER_LIKES_QUERY = "DELETE FROM film_likes WHERE user_id = ?";
+    private static final String DECREMENT_USER_LIKED_FILMS_QUERY = "UPDATE film_stats SET likes_count = likes_count - 1 " +
+                                                                   "WHERE film_id IN (SELECT film_id FROM film_likes WHERE user_id = ?)";
+    private static final Keyset<User> USER_KEYSET = Keyset.byId("user_id", User::getId);
     private final RatingRepository ratingRepository;
     private final GenreRepository genreRepository;
+    private final DataVersions dataVersions;
 
     @Autowired
-    public UserRepository(JdbcTemplate jdbcTemplate, RowMapper<User> rowMapper, RatingRepository ratingRepository, GenreRepository genreRepository) {
+    public UserRepository(JdbcTemplate jdbcTemplate, RowMapper<User> rowMapper, RatingRepository ratingRepository,
+                          GenreRepository genreRepository, DataVersions dataVersions) {
         super(jdbcTemplate, rowMapper);
         this.ratingRepository = ratingRepository;
         this.genreRepository = genreRepository;
+        this.dataVersions = dataVersions;
     }
 
     public List<User> getAll() {
@@ -46,11 +61,35 @@ public class UserRepository extends FoundRepository {
         return findMany(FIND_ALL_QUERY);
     }
 
+    public Page<User> getPage(Cursor after, int limit) {
+        log.debug("Запрос на получение страницы таблицы users после {}", after);
+        return findPage(FIND_PAGE_QUERY, USER_KEYSET, after, limit);
+    }
+
     public Optional<User> getById(int userId) {
         log.debug("Запрос на получение строки таблицы users с id = {}", userId);
         return findOne(FIND_BY_ID_QUERY, userId);
     }
 
+    public boolean existsById(int userId) {
+        Integer count = jdbcTemplate.queryForObject(EXISTS_BY_ID_QUERY, Integer.class, userId);
+        return count != null && count > 0;
+    }
+
+    public List<User> getByIds(List<Integer> userIds) {
+        log.debug("Запрос на получение строк таблицы users с id из {}", userIds);
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String placeholders = String.join(",", Collections.nCopies(userIds.size(), "?"));
+        Map<Integer, User> users = findMany(String.format(FIND_BY_IDS_QUERY, placeholders), userIds.toArray()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return userIds.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     public Optional<User> getByEmail(String email) {
         log.debug("Запрос на получение строки таблицы users с email = {}", email);
         return findOne(FIND_BY_EMAIL_QUERY, email);
@@ -88,12 +127,14 @@ public class UserRepository extends FoundRepository {
     public void addFriend(int userId, int friendId) {
         log.debug("Запрос на вставку строки в таблицу friendships");
         insert(INSERT_INTO_FRIENDSHIPS_QUERY, userId, friendId);
+        dataVersions.bump(DataVersions.Table.FRIENDS);
         log.debug("Добавлена строка в таблицу friendships: user_id = {}, friend_id = {}", userId, friendId);
     }
 
     public void removeFriend(int userId, int friendId) {
         log.debug("Запрос на удаление строки из таблицы friendships");
         update(DELETE_FROM_FRIENDSHIPS_QUERY, userId, friendId);
+        dataVersions.bump(DataVersions.Table.FRIENDS);
         log.debug("Удалена строка из таблицы friendships: user_id = {}, friend_id = {}", userId, friendId);
     }
 
@@ -102,6 +143,12 @@ public class UserRepository extends FoundRepository {
         return findMany(FIND_FRIENDS_QUERY, userId);
     }
 
+    public void forEachFriendship(BiConsumer<Integer, Integer> consumer) {
+        log.debug("Запрос на чтение всех строк таблицы friendships");
+        jdbcTemplate.query(GET_ALL_FRIENDSHIPS_QUERY, (RowCallbackHandler) rs ->
+                consumer.accept(rs.getInt("user_id"), rs.getInt("friend_id")));
+    }
+
 //    public boolean isFriendshipExist(int userId, int friendId) {
 //        log.debug("Запрос на получение дружбы между двумя пользователями");
 //        return findOne(FIND_FRIENDSHIP_BETWEEN_USERS, userId, friendId).isPresent();
@@ -110,7 +157,10 @@ public class UserRepository extends FoundRepository {
     public void deleteById(int userId) {
         log.debug("Запрос на удаление пользователя с id = {}", userId);
         update(DELETE_USER_FRIENDSHIPS_QUERY, userId, userId);
+        dataVersions.bump(DataVersions.Table.FRIENDS);
+        jdbcTemplate.update(DECREMENT_USER_LIKED_FILMS_QUERY, userId);
         update(DELETE_USER_LIKES_QUERY, userId);
+        dataVersions.bump(DataVersions.Table.LIKES);
         update(DELETE_USER_QUERY, userId);
         log.debug("Пользователь с id = {} удален", userId);
     }
@@ -3,59 +3,52 @@ package ru.yandex.practicum.filmorate.dal.mappers;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Component;
-import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
+/**
+ * Собирает базовые строки фильмов (без жанров и режиссёров) в порядке выборки.
+ * Жанры и режиссёры догружаются отдельно через {@link ru.yandex.practicum.filmorate.dal.FilmHydrator}.
+ */
 @Component
 public class FoundFilmRepository implements ResultSetExtractor<List<Film>> {
 
     @Override
     public List<Film> extractData(ResultSet rs) throws SQLException, DataAccessException {
         final Map<Integer, Film> filmMap = new LinkedHashMap<>();
+        final Map<Integer, Rating> ratings = new HashMap<>();
 
         while (rs.next()) {
             Integer filmId = rs.getInt("film_id");
-            Film film = filmMap.get(filmId);
-            if (film == null) {
-                film = new Film();
-                film.setId(filmId);
-                film.setName(rs.getString("film_name"));
-                film.setDescription(rs.getString("film_description"));
-                film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
-                film.setDuration(rs.getInt("film_duration"));
-                Rating mpaRating = new Rating();
-                mpaRating.setId(rs.getInt("rating_id"));
-                mpaRating.setName(rs.getString("rating_name"));
-                film.setMpa(mpaRating);
-                film.setGenres(new HashSet<>());
-                film.setDirectors(new ArrayList<>());
-                filmMap.put(filmId, film);
-            }
-            int genreId = rs.getInt("genre_id");
-            if (!rs.wasNull()) {
-                Genre genre = new Genre();
-                genre.setId(genreId);
-                genre.setName(rs.getString("genre_name"));
-                if (!film.getGenres().contains(genre)) {
-                    film.getGenres().add(genre);
-                }
-            }
-            int directorId = rs.getInt("director_id");
-            if (!rs.wasNull()) {
-                Director director = new Director();
-                director.setId(directorId);
-                director.setName(rs.getString("director_name"));
-                if (!film.getDirectors().contains(director)) {
-                    film.getDirectors().add(director);
-                }
+            if (!filmMap.containsKey(filmId)) {
+                filmMap.put(filmId, mapFilm(rs, ratings));
             }
         }
         return new ArrayList<>(filmMap.values());
     }
+
+    public Film mapFilm(ResultSet rs, Map<Integer, Rating> ratings) throws SQLException {
+        Film film = new Film();
+        film.setId(rs.getInt("film_id"));
+        film.setName(rs.getString("film_name"));
+        film.setDescription(rs.getString("film_description"));
+        film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
+        film.setDuration(rs.getInt("film_duration"));
+        int ratingId = rs.getInt("rating_id");
+        Rating mpaRating = ratings.get(ratingId);
+        if (mpaRating == null) {
+            mpaRating = new Rating();
+            mpaRating.setId(ratingId);
+            mpaRating.setName(rs.getString("rating_name"));
+            ratings.put(ratingId, mpaRating);
+        }
+        film.setMpa(mpaRating);
+        film.setGenres(new HashSet<>());
+        film.setDirectors(new ArrayList<>());
+        return film;
+    }
 }
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+
+@Data
+public class FilmBrowseDto {
+    private Integer total;
+    private List<FilmDto> films;
+    private Map<Integer, Integer> genres;
+    private Map<Integer, Integer> mpa;
+    private Map<Integer, Integer> directors;
+    private String nextCursor;
+}
@@ -15,7 +15,7 @@ import java.util.Set;
 @Data
 public class FilmDto {
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
-    private int id;
+    private Integer id;
     @NotBlank(message = "Название не может быть пустым")
     private String name;
     @Size(max = 200, message = "Максимальная длина описания — 200 символов")
@@ -24,7 +24,7 @@ public class FilmDto {
     @ReleaseDate
     private LocalDate releaseDate;
     @Positive(message = "Продолжительность фильма должна быть положительным числом")
-    private int duration;
+    private Integer duration;
     private Rating mpa;
     private List<GenreDto> genres;
     private List<DirectorDto> directors;
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Поля {@link FilmDto}, которые можно запросить параметром {@code fields}. Поле {@code id} отдаётся всегда.
+ */
+public enum FilmField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    MPA("mpa"),
+    GENRES("genres"),
+    DIRECTORS("directors"),
+    LIKES("likes");
+
+    public static final Set<FilmField> ALL = Collections.unmodifiableSet(EnumSet.allOf(FilmField.class));
+
+    private final String jsonName;
+
+    FilmField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public static Set<FilmField> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        EnumSet<FilmField> result = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            result.add(byJsonName(name.trim()));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private static FilmField byJsonName(String name) {
+        for (FilmField field : values()) {
+            if (field.jsonName.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        throw new ValidationException("Неизвестное поле фильма: " + name);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Фильм, запрошенный с параметром {@code fields}: незапрошенные поля не заполняются и в ответ не попадают.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectedFilmDto extends FilmDto {
+}
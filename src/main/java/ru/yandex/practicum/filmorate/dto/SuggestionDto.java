@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Data;
+
+
+@Data
+public class SuggestionDto {
+    private String type;
+    private Integer id;
+    private String name;
+    private Long likes;
+}
@@ -29,6 +29,13 @@ public class ErrorHandler {
         return new ErrorMessage(ex.getMessage());
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorMessage handleServiceUnavailable(final ServiceUnavailableException ex) {
+        log.warn("Сервис перегружен: {}", ex.getMessage());
+        return new ErrorMessage(ex.getMessage());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorMessage handleMethodArgumentNotValidException(final MethodArgumentNotValidException ex) {
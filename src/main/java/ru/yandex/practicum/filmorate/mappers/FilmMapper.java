@@ -14,27 +14,46 @@ import java.util.stream.Collectors;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class FilmMapper {
     public static FilmDto mapToFilmDto(Film film) {
-        FilmDto dto = new FilmDto();
-        dto.setId(film.getId());
-        dto.setName(film.getName());
-        dto.setDescription(film.getDescription());
-        dto.setReleaseDate(film.getReleaseDate());
-        dto.setDuration(film.getDuration());
-        dto.setMpa(film.getMpa());
-        dto.setGenres(
-                film.getGenres().stream()
-                        .map(FilmMapper::mapToGenreDto)
-                        .sorted(Comparator.comparingInt(GenreDto::getId))
-                        .collect(Collectors.toList())
-        );
+        return mapToFilmDto(film, FilmField.ALL);
+    }
 
-        dto.setDirectors(
-                film.getDirectors() == null ? Collections.emptyList() :
-                        film.getDirectors().stream()
-                                .map(d -> new DirectorDto(d.getId(), d.getName()))
-                                .collect(Collectors.toList())
-        );
-        dto.setLikes(film.getLikes());
+    public static FilmDto mapToFilmDto(Film film, Set<FilmField> fields) {
+        FilmDto dto = fields.containsAll(FilmField.ALL) ? new FilmDto() : new ProjectedFilmDto();
+        dto.setId(film.getId());
+        if (fields.contains(FilmField.NAME)) {
+            dto.setName(film.getName());
+        }
+        if (fields.contains(FilmField.DESCRIPTION)) {
+            dto.setDescription(film.getDescription());
+        }
+        if (fields.contains(FilmField.RELEASE_DATE)) {
+            dto.setReleaseDate(film.getReleaseDate());
+        }
+        if (fields.contains(FilmField.DURATION)) {
+            dto.setDuration(film.getDuration());
+        }
+        if (fields.contains(FilmField.MPA)) {
+            dto.setMpa(film.getMpa());
+        }
+        if (fields.contains(FilmField.GENRES)) {
+            dto.setGenres(
+                    film.getGenres().stream()
+                            .map(FilmMapper::mapToGenreDto)
+                            .sorted(Comparator.comparingInt(GenreDto::getId))
+                            .collect(Collectors.toList())
+            );
+        }
+        if (fields.contains(FilmField.DIRECTORS)) {
+            dto.setDirectors(
+                    film.getDirectors() == null ? Collections.emptyList() :
+                            film.getDirectors().stream()
+                                    .map(d -> new DirectorDto(d.getId(), d.getName()))
+                                    .collect(Collectors.toList())
+            );
+        }
+        if (fields.contains(FilmField.LIKES)) {
+            dto.setLikes(film.getLikes());
+        }
 
         return dto;
     }
@@ -85,6 +104,20 @@ public final class FilmMapper {
         return film;
     }
 
+    public static Film copyFilm(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa());
+        copy.setGenres(film.getGenres() != null ? new HashSet<>(film.getGenres()) : new HashSet<>());
+        copy.setDirectors(film.getDirectors() != null ? new ArrayList<>(film.getDirectors()) : new ArrayList<>());
+        copy.setLikes(film.getLikes() != null ? new HashSet<>(film.getLikes()) : new HashSet<>());
+        return copy;
+    }
+
     private static GenreDto mapToGenreDto(Genre genre) {
         GenreDto dto = new GenreDto();
         dto.setId(genre.getId());
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.mappers;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie;
+
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SuggestionMapper {
+    public static SuggestionDto mapToSuggestionDto(SuggestTrie.Suggestion suggestion) {
+        SuggestionDto suggestionDto = new SuggestionDto();
+        suggestionDto.setType(suggestion.kind().name());
+        suggestionDto.setId(suggestion.id());
+        suggestionDto.setName(suggestion.name());
+        suggestionDto.setLikes(suggestion.likes());
+        return suggestionDto;
+    }
+}
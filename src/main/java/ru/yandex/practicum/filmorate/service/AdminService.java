@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.storage.ActivityTracker;
+import ru.yandex.practicum.filmorate.storage.FilmCache;
+
+@Service
+@RequiredArgsConstructor
+public class AdminService {
+
+    private final FilmCache filmCache;
+    private final ActivityTracker activityTracker;
+
+    public FilmCache.Stats getFilmCacheStats() {
+        return filmCache.stats();
+    }
+
+    public ActivityTracker.Snapshot getActivity(int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Количество записей должно быть положительным");
+        }
+        return activityTracker.snapshot(limit);
+    }
+}
@@ -2,9 +2,16 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.Cursor;
 import ru.yandex.practicum.filmorate.dal.DirectorRepository;
+import ru.yandex.practicum.filmorate.dal.Page;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.DirectorFilmIndex;
+import ru.yandex.practicum.filmorate.storage.FacetIndex;
+import ru.yandex.practicum.filmorate.storage.FilmCatalog;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie;
+import ru.yandex.practicum.filmorate.storage.TrigramIndex;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,17 +21,29 @@ import java.util.Optional;
 public class DirectorService {
 
     private final DirectorRepository directorRepository;
+    private final FilmCatalog filmCatalog;
+    private final DirectorFilmIndex directorFilmIndex;
+    private final TrigramIndex trigramIndex;
+    private final SuggestTrie suggestTrie;
+    private final FacetIndex facetIndex;
 
     public List<Director> getAll() {
         return directorRepository.findAll();
     }
 
+    public Page<Director> getPage(String cursor, int limit) {
+        return directorRepository.findAll(Cursor.decode(cursor), limit);
+    }
+
     public Optional<Director> getById(int id) {
         return directorRepository.findById(id);
     }
 
     public Director create(Director director) {
-        return directorRepository.create(director);
+        Director created = directorRepository.create(director);
+        trigramIndex.directorSaved(created);
+        suggestTrie.directorSaved(created);
+        return created;
     }
 
     public Director update(Director director) {
@@ -33,7 +52,11 @@ public class DirectorService {
                         "Режиссёр с id = " + director.getId() + " не найден"
                 ));
         existingDirector.setName(director.getName());
-        return directorRepository.update(existingDirector);
+        Director updated = directorRepository.update(existingDirector);
+        trigramIndex.directorSaved(updated);
+        suggestTrie.directorSaved(updated);
+        filmCatalog.refreshDirector(updated.getId());
+        return updated;
     }
 
     public void delete(int id) {
@@ -41,5 +64,10 @@ public class DirectorService {
             throw new NotFoundException("Режиссёр с id = " + id + " не найден");
         }
         directorRepository.delete(id);
+        directorFilmIndex.directorRemoved(id);
+        trigramIndex.directorRemoved(id);
+        suggestTrie.directorRemoved(id);
+        facetIndex.directorRemoved(id);
+        filmCatalog.refreshDirector(id);
     }
 }
\ No newline at end of file
@@ -2,15 +2,31 @@ package ru.yandex.practicum.filmorate.service;
 
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dal.*;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mappers.FilmMapper;
+import ru.yandex.practicum.filmorate.mappers.SuggestionMapper;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.DataVersions;
+import ru.yandex.practicum.filmorate.storage.DirectorFilmIndex;
+import ru.yandex.practicum.filmorate.storage.FacetIndex;
+import ru.yandex.practicum.filmorate.storage.FilmCatalog;
+import ru.yandex.practicum.filmorate.storage.FuzzyTitleIndex;
+import ru.yandex.practicum.filmorate.storage.JsonPayloadCache;
+import ru.yandex.practicum.filmorate.storage.LikeBitmapIndex;
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.SingleFlight;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie;
+import ru.yandex.practicum.filmorate.storage.TrendingEngine;
+import ru.yandex.practicum.filmorate.storage.TrigramIndex;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,36 +36,104 @@ public class FilmService {
     private final GenreRepository genreRepository;
     private final UserRepository userRepository;
     private final DirectorRepository directorRepository;
-    private final FeedRepository feedRepository;
+    private final FilmCatalog filmCatalog;
+    private final JsonPayloadCache payloadCache;
+    private final DataVersions dataVersions;
+    private final PopularityIndex popularityIndex;
+    private final LikeIngestionService likeIngestionService;
+    private final LikeBitmapIndex likeBitmapIndex;
+    private final TrendingEngine trendingEngine;
+    private final DirectorFilmIndex directorFilmIndex;
+    private final SingleFlight singleFlight;
+    private final TrigramIndex trigramIndex;
+    private final FuzzyTitleIndex fuzzyTitleIndex;
+    private final SuggestTrie suggestTrie;
+    private final FacetIndex facetIndex;
+    private final int exportFetchSize;
+    private final double popularityWeight;
 
     @Autowired
     public FilmService(FilmRepository filmRepository,
                        GenreRepository genreRepository,
                        RatingRepository ratingRepository,
                        UserRepository userRepository,
-                       DirectorRepository directorRepository, FeedRepository feedRepository) {
+                       DirectorRepository directorRepository,
+                       FilmCatalog filmCatalog, JsonPayloadCache payloadCache, DataVersions dataVersions,
+                       PopularityIndex popularityIndex, LikeIngestionService likeIngestionService,
+                       LikeBitmapIndex likeBitmapIndex, TrendingEngine trendingEngine,
+                       DirectorFilmIndex directorFilmIndex, SingleFlight singleFlight, TrigramIndex trigramIndex,
+                       FuzzyTitleIndex fuzzyTitleIndex, SuggestTrie suggestTrie, FacetIndex facetIndex,
+                       @Value("${filmorate.export.fetch-size:500}") int exportFetchSize,
+                       @Value("${filmorate.search.popularity-weight:1.0}") double popularityWeight) {
         this.filmRepository = filmRepository;
         this.genreRepository = genreRepository;
         this.ratingRepository = ratingRepository;
         this.userRepository = userRepository;
         this.directorRepository = directorRepository;
-        this.feedRepository = feedRepository;
+        this.filmCatalog = filmCatalog;
+        this.payloadCache = payloadCache;
+        this.dataVersions = dataVersions;
+        this.popularityIndex = popularityIndex;
+        this.likeIngestionService = likeIngestionService;
+        this.likeBitmapIndex = likeBitmapIndex;
+        this.trendingEngine = trendingEngine;
+        this.directorFilmIndex = directorFilmIndex;
+        this.singleFlight = singleFlight;
+        this.trigramIndex = trigramIndex;
+        this.fuzzyTitleIndex = fuzzyTitleIndex;
+        this.suggestTrie = suggestTrie;
+        this.facetIndex = facetIndex;
+        this.exportFetchSize = exportFetchSize;
+        this.popularityWeight = popularityWeight;
     }
 
-    public List<FilmDto> getAll() {
-        return filmRepository.getAll().stream()
+    public List<FilmDto> getAll(String fields) {
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        List<Film> films = filmCatalog.isEnabled() ? filmCatalog.getAll() : filmRepository.getAll(filmFields);
+        return films.stream()
+                .map(film -> FilmMapper.mapToFilmDto(film, filmFields))
+                .collect(Collectors.toList());
+    }
+
+    public void exportAll(Consumer<List<FilmDto>> chunkConsumer) {
+        filmRepository.streamAll(exportFetchSize, films -> chunkConsumer.accept(films.stream()
                 .map(FilmMapper::mapToFilmDto)
+                .toList()));
+    }
+
+    public List<FilmDto> getByIds(List<Integer> ids, String fields) {
+        if (ids.isEmpty() || ids.size() > FoundRepository.MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество id должно быть от 1 до " + FoundRepository.MAX_PAGE_SIZE);
+        }
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return filmRepository.getByIds(ids.stream().distinct().toList(), filmFields).stream()
+                .map(film -> FilmMapper.mapToFilmDto(film, filmFields))
                 .collect(Collectors.toList());
     }
 
+    public Page<FilmDto> getPage(String cursor, int limit, String fields) {
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return filmRepository.getPage(Cursor.decode(cursor), limit, filmFields)
+                .map(film -> FilmMapper.mapToFilmDto(film, filmFields));
+    }
+
     public FilmDto getById(int id) {
-        Optional<Film> mainFilm = filmRepository.getById(id);
+        Optional<Film> mainFilm = filmCatalog.isEnabled() ? filmCatalog.getById(id) : filmRepository.getById(id);
         if (mainFilm.isEmpty()) {
             throw new NotFoundException("Фильм с id = " + id + " не найден");
         }
         return FilmMapper.mapToFilmDto(mainFilm.get());
     }
 
+    /**
+     * То же, что {@link #getById(int)}, но в виде готового JSON. Тело пересобирается, только если
+     * с момента сериализации менялись фильмы или режиссёры.
+     */
+    public JsonPayloadCache.Payload getByIdPayload(int id) {
+        long version = dataVersions.sum(DataVersions.Table.FILMS, DataVersions.Table.DIRECTORS);
+        return payloadCache.get("film:" + id, version, () -> getById(id));
+    }
+
     @Transactional
     public FilmDto create(NewFilmRequest request) {
         Optional<Rating> mainRaiting = ratingRepository.getById(request.getMpa().getId());
@@ -81,6 +165,13 @@ public class FilmService {
         }
         Film film = FilmMapper.mapToFilm(request, mpaRating, genres, directors);
         filmRepository.create(film);
+        filmCatalog.put(film);
+        popularityIndex.filmSaved(film);
+        directorFilmIndex.filmSaved(film);
+        trigramIndex.filmSaved(film);
+        fuzzyTitleIndex.filmSaved(film);
+        suggestTrie.filmSaved(film);
+        facetIndex.filmSaved(film);
         return FilmMapper.mapToFilmDto(film);
     }
 
@@ -103,42 +194,64 @@ public class FilmService {
         }
         Film updatedFilm = FilmMapper.updateFilmFields(mainFilm.get(), request, directors);
         updatedFilm = filmRepository.update(updatedFilm);
+        popularityIndex.filmSaved(updatedFilm);
+        directorFilmIndex.filmSaved(updatedFilm);
+        trigramIndex.filmSaved(updatedFilm);
+        fuzzyTitleIndex.filmSaved(updatedFilm);
+        suggestTrie.filmSaved(updatedFilm);
+        facetIndex.filmSaved(updatedFilm);
+        filmCatalog.refresh(updatedFilm.getId());
         return FilmMapper.mapToFilmDto(updatedFilm);
     }
 
-    @Transactional
     public void putLike(int filmId, int userId) {
-        if (filmRepository.getById(filmId).isEmpty()) {
-            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
-        }
-        if (userRepository.getById(userId).isEmpty()) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-        if (!filmRepository.getLikesUserId(filmId).contains(userId)) {
-            filmRepository.putLike(filmId, userId);
-        }
-        feedRepository.create(new Feed(userId, filmId, EventType.LIKE, Operation.ADD));
+        checkLikeParticipants(filmId, userId);
+        likeIngestionService.like(filmId, userId);
     }
 
-    @Transactional
     public void removeLike(int filmId, int userId) {
-        if (filmRepository.getById(filmId).isEmpty()) {
-            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
-        }
-        if (userRepository.getById(userId).isEmpty()) {
-            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
-        }
-        filmRepository.removeLike(filmId, userId);
-        feedRepository.create(new Feed(userId, filmId, EventType.LIKE, Operation.REMOVE));
+        checkLikeParticipants(filmId, userId);
+        likeIngestionService.unlike(filmId, userId);
     }
 
-    public List<FilmDto> getPopular(int count, Integer genreId, Integer year) {
+    public Page<FilmDto> getPopular(int count, Integer genreId, Integer year, String cursor, String fields) {
         if (count <= 0) {
             throw new ValidationException("Количество фильмов должно быть положительным числом");
         }
-        List<Film> popular = filmRepository.getPopular(count, genreId, year);
-        return popular.stream()
-                .map(FilmMapper::mapToFilmDto)
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        Cursor after = Cursor.decode(cursor);
+        String key = String.join(":", "popular", String.valueOf(count), String.valueOf(genreId),
+                String.valueOf(year), String.valueOf(cursor), String.valueOf(fields));
+        return singleFlight.execute(key, filmsVersion(), () -> loadPopular(count, genreId, year, after, filmFields));
+    }
+
+    private Page<FilmDto> loadPopular(int count, Integer genreId, Integer year, Cursor after,
+                                      Set<FilmField> filmFields) {
+        Page<Film> films;
+        if (popularityIndex.isReady()) {
+            Page<Integer> filmIds = popularityIndex.top(genreId, year, after, count);
+            films = new Page<>(filmRepository.getByIds(filmIds.items(), filmFields), filmIds.next());
+        } else {
+            films = filmRepository.getPopular(count, genreId, year, after, filmFields);
+        }
+        return films.map(film -> FilmMapper.mapToFilmDto(film, filmFields));
+    }
+
+    public JsonPayloadCache.Payload getPopularPayload(int count, Integer genreId, Integer year,
+                                                      String cursor, String fields) {
+        long version = filmsVersion();
+        String key = String.join(":", "popular", String.valueOf(count), String.valueOf(genreId),
+                String.valueOf(year), String.valueOf(cursor), String.valueOf(fields));
+        return payloadCache.getPage(key, version, () -> getPopular(count, genreId, year, cursor, fields));
+    }
+
+    public List<FilmDto> getTrending(String window, int count, String fields) {
+        if (count <= 0 || count > FoundRepository.MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество фильмов должно быть от 1 до " + FoundRepository.MAX_PAGE_SIZE);
+        }
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        return filmRepository.getByIds(trendingEngine.top(window, count), filmFields).stream()
+                .map(film -> FilmMapper.mapToFilmDto(film, filmFields))
                 .collect(Collectors.toList());
     }
 
@@ -146,39 +259,149 @@ public class FilmService {
         if (directorRepository.findById(directorId).isEmpty()) {
             throw new NotFoundException("Режиссёр с id = " + directorId + " не найден");
         }
+        boolean byLikes = "likes".equalsIgnoreCase(sortBy);
+        if (!byLikes && !"year".equalsIgnoreCase(sortBy)) {
+            throw new IllegalArgumentException("Некорректный параметр сортировки: " + sortBy);
+        }
+        String key = String.join(":", "director", String.valueOf(directorId), byLikes ? "likes" : "year");
+        return singleFlight.execute(key, filmsVersion(), () -> loadFilmsByDirector(directorId, byLikes));
+    }
+
+    private List<FilmDto> loadFilmsByDirector(int directorId, boolean byLikes) {
         List<Film> films;
-        if ("likes".equalsIgnoreCase(sortBy)) {
+        if (directorFilmIndex.isReady()) {
+            films = filmRepository.getByIds(byLikes
+                    ? directorFilmIndex.byLikes(directorId)
+                    : directorFilmIndex.byYear(directorId));
+        } else if (byLikes) {
             films = filmRepository.getFilmsByDirectorSortedByLikes(directorId);
-        } else if ("year".equalsIgnoreCase(sortBy)) {
-            films = filmRepository.getFilmsByDirectorSortedByYear(directorId);
         } else {
-            throw new IllegalArgumentException("Некорректный параметр сортировки: " + sortBy);
+            films = filmRepository.getFilmsByDirectorSortedByYear(directorId);
         }
         return films.stream()
                 .map(FilmMapper::mapToFilmDto)
                 .collect(Collectors.toList());
     }
 
-    public List<FilmDto> searchFilms(String query, String by) {
+    /**
+     * При {@code fuzzy} ищет только по словам названия с допуском опечаток, поэтому {@code by} должен
+     * включать {@code title}; пока словарь не построен, выполняется обычный поиск подстроки. Отдаётся не
+     * больше {@code count} фильмов.
+     */
+    public List<FilmDto> searchFilms(String query, String by, String fields, boolean fuzzy, int count) {
         if (query == null || query.trim().isEmpty()) {
             throw new ValidationException("Поисковый запрос не может быть пустым");
         }
+        if (count <= 0 || count > FoundRepository.MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество фильмов должно быть от 1 до " + FoundRepository.MAX_PAGE_SIZE);
+        }
+        Set<FilmField> filmFields = FilmField.parse(fields);
 
         String searchBy = (by != null) ? by.toLowerCase() : "title,director";
+        if (fuzzy && !searchBy.contains("title")) {
+            throw new ValidationException("Нечёткий поиск выполняется только по названию: by=title");
+        }
+        if (fuzzy && fuzzyTitleIndex.isReady()) {
+            String key = String.join(":", "fuzzy", String.valueOf(count), String.valueOf(fields), query.trim());
+            return singleFlight.execute(key, filmsVersion(), () -> {
+                List<Integer> filmIds = fuzzyTitleIndex.search(query.trim());
+                return filmRepository.getByIds(filmIds.subList(0, Math.min(count, filmIds.size())), filmFields)
+                        .stream()
+                        .map(film -> FilmMapper.mapToFilmDto(film, filmFields))
+                        .collect(Collectors.toList());
+            });
+        }
+        String key = String.join(":", "search", searchBy, String.valueOf(count), String.valueOf(fields),
+                query.trim());
+        return singleFlight.execute(key, filmsVersion(), () -> loadSearch(query.trim(), searchBy, count, filmFields));
+    }
+
+    /**
+     * Подсказки для поиска по мере набора: фильмы и режиссёры, у которых с {@code prefix} начинается
+     * название, имя или одно из слов, по убыванию лайков. {@code limit} не больше {@code top-k} дерева.
+     */
+    public List<SuggestionDto> getSuggestions(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new ValidationException("Префикс не может быть пустым");
+        }
+        if (limit <= 0 || limit > suggestTrie.getTopK()) {
+            throw new ValidationException("Количество подсказок должно быть от 1 до " + suggestTrie.getTopK());
+        }
+        if (!suggestTrie.isReady()) {
+            throw new ServiceUnavailableException("Подсказки ещё не готовы, повторите запрос позже");
+        }
+        return suggestTrie.suggest(prefix.strip(), limit).stream()
+                .map(SuggestionMapper::mapToSuggestionDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Каталог с фильтрами по жанрам, рейтингам MPA, режиссёрам (внутри фасета — «или»), диапазонам года
+     * выхода и продолжительности и счётчиками значений фасетов. Фильмы идут по возрастанию id.
+     */
+    public FilmBrowseDto browse(FacetIndex.Filter filter, String cursor, int limit, String fields) {
+        if (limit <= 0 || limit > FoundRepository.MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + FoundRepository.MAX_PAGE_SIZE);
+        }
+        checkRange(filter.yearFrom(), filter.yearTo(), "Начальный год не может быть больше конечного");
+        checkRange(filter.durationFrom(), filter.durationTo(),
+                "Минимальная продолжительность не может быть больше максимальной");
+        if (!facetIndex.isReady()) {
+            throw new ServiceUnavailableException("Каталог ещё не готов, повторите запрос позже");
+        }
+        Set<FilmField> filmFields = FilmField.parse(fields);
+        Cursor after = Cursor.decode(cursor);
+        FacetIndex.Result result = facetIndex.browse(filter, after == null ? null : after.id(), limit);
+        List<Integer> filmIds = Arrays.stream(result.filmIds()).boxed().toList();
+
+        FilmBrowseDto browseDto = new FilmBrowseDto();
+        browseDto.setTotal(result.total());
+        browseDto.setFilms(filmRepository.getByIds(filmIds, filmFields).stream()
+                .map(film -> FilmMapper.mapToFilmDto(film, filmFields))
+                .collect(Collectors.toList()));
+        browseDto.setGenres(result.genreCounts());
+        browseDto.setMpa(result.ratingCounts());
+        browseDto.setDirectors(result.directorCounts());
+        if (result.hasMore()) {
+            int lastId = filmIds.getLast();
+            browseDto.setNextCursor(new Cursor(lastId, lastId).encode());
+        }
+        return browseDto;
+    }
+
+    private static void checkRange(Integer from, Integer to, String message) {
+        if (from != null && to != null && from > to) {
+            throw new ValidationException(message);
+        }
+    }
+
+    /**
+     * Из индекса фильмы ранжируются по релевантности ({@link TrigramIndex#matchScores}) с поправкой на
+     * популярность, и загружаются только лучшие {@code count}; пока индексы не готовы, работает SQL.
+     */
+    private List<FilmDto> loadSearch(String query, String searchBy, int count, Set<FilmField> filmFields) {
+        boolean byTitle = searchBy.contains("title");
+        boolean byDirector = searchBy.contains("director");
+        if (!byTitle && !byDirector) {
+            throw new ValidationException("Неверный параметр by. Допустимые значения: title, director");
+        }
         List<Film> foundFilms;
 
-        if (searchBy.contains("title") && searchBy.contains("director")) {
-            foundFilms = filmRepository.searchFilmsByTitleAndDirector(query.trim());
-        } else if (searchBy.contains("title")) {
-            foundFilms = filmRepository.searchFilmsByTitle(query.trim());
-        } else if (searchBy.contains("director")) {
-            foundFilms = filmRepository.searchFilmsByDirector(query.trim());
+        if (trigramIndex.isReady() && likeBitmapIndex.isReady()) {
+            int[] filmIds = likeBitmapIndex.topByRelevance(trigramIndex.matchScores(query, byTitle, byDirector),
+                    popularityWeight, count);
+            foundFilms = filmRepository.getByIds(Arrays.stream(filmIds).boxed().toList(), filmFields);
+        } else if (byTitle && byDirector) {
+            foundFilms = filmRepository.searchFilmsByTitleAndDirector(query, filmFields);
+        } else if (byTitle) {
+            foundFilms = filmRepository.searchFilmsByTitle(query, filmFields);
         } else {
-            throw new ValidationException("Неверный параметр by. Допустимые значения: title, director");
+            foundFilms = filmRepository.searchFilmsByDirector(query, filmFields);
         }
 
         return foundFilms.stream()
-                .map(FilmMapper::mapToFilmDto)
+                .limit(count)
+                .map(film -> FilmMapper.mapToFilmDto(film, filmFields))
                 .collect(Collectors.toList());
     }
 
@@ -189,7 +412,12 @@ public class FilmService {
         userRepository.getById(friendId).orElseThrow(() -> new NotFoundException("Друг с id = " +
                                                                                  userId + "не найден"));
 
-        foundFilms = filmRepository.getCommonFilmsWithFriend(userId, friendId);
+        if (likeBitmapIndex.isReady()) {
+            List<Integer> filmIds = Arrays.stream(likeBitmapIndex.commonLikedFilms(userId, friendId)).boxed().toList();
+            foundFilms = filmRepository.getByIds(filmIds);
+        } else {
+            foundFilms = filmRepository.getCommonFilmsWithFriend(userId, friendId);
+        }
         return foundFilms.stream()
                 .map(FilmMapper::mapToFilmDto)
                 .collect(Collectors.toList());
@@ -200,5 +428,30 @@ public class FilmService {
             throw new NotFoundException("Фильм с id = " + filmId + " не найден");
         }
         filmRepository.deleteById(filmId);
+        filmCatalog.remove(filmId);
+        popularityIndex.filmRemoved(filmId);
+        likeBitmapIndex.filmRemoved(filmId);
+        trendingEngine.filmRemoved(filmId);
+        directorFilmIndex.filmRemoved(filmId);
+        trigramIndex.filmRemoved(filmId);
+        fuzzyTitleIndex.filmRemoved(filmId);
+        suggestTrie.filmRemoved(filmId);
+        facetIndex.filmRemoved(filmId);
+    }
+
+    /**
+     * Версия данных, от которых зависят списки фильмов: сами фильмы, их лайки и режиссёры.
+     */
+    private long filmsVersion() {
+        return dataVersions.sum(DataVersions.Table.FILMS, DataVersions.Table.LIKES, DataVersions.Table.DIRECTORS);
+    }
+
+    private void checkLikeParticipants(int filmId, int userId) {
+        if (filmRepository.getById(filmId).isEmpty()) {
+            throw new NotFoundException("Фильм с id = " + filmId + " не найден");
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.FilmStatsRepository;
+
+@Slf4j
+@Service
+public class FilmStatsReconciler {
+    private final FilmStatsRepository filmStatsRepository;
+
+    public FilmStatsReconciler(FilmStatsRepository filmStatsRepository) {
+        this.filmStatsRepository = filmStatsRepository;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${filmorate.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        int repaired = filmStatsRepository.reconcile();
+        if (repaired > 0) {
+            log.warn("Сверка film_stats: исправлено строк {}", repaired);
+        } else {
+            log.debug("Сверка film_stats: расхождений нет");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.FeedRepository;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.DirectorFilmIndex;
+import ru.yandex.practicum.filmorate.storage.LikeBitmapIndex;
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie;
+import ru.yandex.practicum.filmorate.storage.TrendingEngine;
+
+import java.util.*;
+
+/**
+ * Приём лайков и их отмен. В режиме отложенной записи ({@code filmorate.likes.write-behind-enabled})
+ * операции складываются в ограниченную очередь, где повторные операции над одной парой (фильм, пользователь)
+ * схлопываются до последней, и сбрасываются в базу пакетами идемпотентных запросов. При переполнении
+ * очереди запрос отклоняется с {@link ServiceUnavailableException}. Без отложенной записи операция
+ * применяется сразу тем же пакетным путём.
+ */
+@Slf4j
+@Service
+public class LikeIngestionService {
+    private final FilmRepository filmRepository;
+    private final FeedRepository feedRepository;
+    private final PopularityIndex popularityIndex;
+    private final LikeBitmapIndex likeBitmapIndex;
+    private final TrendingEngine trendingEngine;
+    private final DirectorFilmIndex directorFilmIndex;
+    private final SuggestTrie suggestTrie;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean writeBehind;
+    private final int capacity;
+    private final int batchSize;
+    private final LinkedHashMap<FilmLike, Boolean> pending = new LinkedHashMap<>();
+    private final List<Feed> pendingFeed = new ArrayList<>();
+
+    public LikeIngestionService(FilmRepository filmRepository, FeedRepository feedRepository,
+                                PopularityIndex popularityIndex, LikeBitmapIndex likeBitmapIndex,
+                                TrendingEngine trendingEngine, DirectorFilmIndex directorFilmIndex,
+                                SuggestTrie suggestTrie,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${filmorate.likes.write-behind-enabled:false}") boolean writeBehind,
+                                @Value("${filmorate.likes.queue-capacity:10000}") int capacity,
+                                @Value("${filmorate.likes.batch-size:500}") int batchSize) {
+        this.filmRepository = filmRepository;
+        this.feedRepository = feedRepository;
+        this.popularityIndex = popularityIndex;
+        this.likeBitmapIndex = likeBitmapIndex;
+        this.trendingEngine = trendingEngine;
+        this.directorFilmIndex = directorFilmIndex;
+        this.suggestTrie = suggestTrie;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehind = writeBehind;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    public void like(int filmId, int userId) {
+        submit(new FilmLike(filmId, userId), true);
+    }
+
+    public void unlike(int filmId, int userId) {
+        submit(new FilmLike(filmId, userId), false);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.flush-interval-ms:100}")
+    public void flush() {
+        while (true) {
+            Map<FilmLike, Boolean> operations = new LinkedHashMap<>();
+            List<Feed> feeds;
+            synchronized (this) {
+                if (pending.isEmpty() && pendingFeed.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<FilmLike, Boolean>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && operations.size() < batchSize) {
+                    Map.Entry<FilmLike, Boolean> operation = iterator.next();
+                    operations.put(operation.getKey(), operation.getValue());
+                    iterator.remove();
+                }
+                List<Feed> head = pendingFeed.subList(0, Math.min(batchSize, pendingFeed.size()));
+                feeds = new ArrayList<>(head);
+                head.clear();
+            }
+            try {
+                apply(operations, feeds);
+            } catch (RuntimeException e) {
+                log.warn("Пакет из {} лайков не записан, повтор по одной операции", operations.size(), e);
+                applyOneByOne(operations, feeds);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void submit(FilmLike like, boolean liked) {
+        Feed feed = new Feed(like.userId(), like.filmId(), EventType.LIKE, liked ? Operation.ADD : Operation.REMOVE);
+        if (!writeBehind) {
+            apply(alreadyApplied(like, liked) ? Map.of() : Map.of(like, liked), List.of(feed));
+            return;
+        }
+        synchronized (this) {
+            if (pendingFeed.size() >= capacity) {
+                throw new ServiceUnavailableException("Очередь лайков переполнена, повторите запрос позже");
+            }
+            if (pending.containsKey(like) || !alreadyApplied(like, liked)) {
+                pending.put(like, liked);
+            }
+            pendingFeed.add(feed);
+        }
+    }
+
+    /**
+     * Лайк уже стоит (или уже снят) по данным индекса — писать в {@code film_likes} нечего.
+     */
+    private boolean alreadyApplied(FilmLike like, boolean liked) {
+        return likeBitmapIndex.isReady() && likeBitmapIndex.hasLiked(like.filmId(), like.userId()) == liked;
+    }
+
+    /**
+     * Записывает операции одной транзакцией. Проверка {@code NOT EXISTS} при вставке не защищает от
+     * такого же лайка из параллельной транзакции: тогда вставка нарушает уникальность пары, транзакция
+     * откатывается и повторяется — при повторе пара уже видна в {@code film_likes} и считается лайкнутой.
+     */
+    private void apply(Map<FilmLike, Boolean> operations, List<Feed> feeds) {
+        try {
+            write(operations, feeds);
+        } catch (DuplicateKeyException e) {
+            log.debug("Пакет из {} лайков столкнулся с параллельной вставкой, повтор", operations.size());
+            write(operations, feeds);
+        }
+    }
+
+    private void write(Map<FilmLike, Boolean> operations, List<Feed> feeds) {
+        List<FilmLike> likes = new ArrayList<>();
+        List<FilmLike> unlikes = new ArrayList<>();
+        operations.forEach((like, liked) -> (liked ? likes : unlikes).add(like));
+        transactionTemplate.executeWithoutResult(status -> {
+            for (FilmLike like : filmRepository.putLikes(likes)) {
+                popularityIndex.likeAdded(like.filmId());
+                likeBitmapIndex.likeAdded(like);
+                trendingEngine.likeAdded(like.filmId());
+                directorFilmIndex.likeAdded(like.filmId());
+                suggestTrie.likeAdded(like.filmId());
+            }
+            for (FilmLike like : filmRepository.removeLikes(unlikes)) {
+                popularityIndex.likeRemoved(like.filmId());
+                likeBitmapIndex.likeRemoved(like);
+                directorFilmIndex.likeRemoved(like.filmId());
+                suggestTrie.likeRemoved(like.filmId());
+            }
+            feedRepository.createAll(feeds);
+        });
+    }
+
+    private void applyOneByOne(Map<FilmLike, Boolean> operations, List<Feed> feeds) {
+        operations.forEach((like, liked) -> {
+            try {
+                apply(Map.of(like, liked), List.of());
+            } catch (RuntimeException e) {
+                log.error("Лайк film_id = {}, user_id = {} отброшен", like.filmId(), like.userId(), e);
+            }
+        });
+        for (Feed feed : feeds) {
+            try {
+                feedRepository.create(feed);
+            } catch (RuntimeException e) {
+                log.error("Событие ленты пользователя {} отброшено", feed.getUserId(), e);
+            }
+        }
+    }
+}
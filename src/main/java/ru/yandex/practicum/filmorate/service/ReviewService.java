@@ -1,7 +1,10 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.Cursor;
 import ru.yandex.practicum.filmorate.dal.FeedRepository;
+import ru.yandex.practicum.filmorate.dal.Page;
 import ru.yandex.practicum.filmorate.dal.ReviewRepository;
 import ru.yandex.practicum.filmorate.dto.NewReviewRequest;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
@@ -14,9 +17,7 @@ import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Operation;
 import ru.yandex.practicum.filmorate.model.Review;
 
-import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class ReviewService {
@@ -34,6 +35,7 @@ public class ReviewService {
         this.feedRepository = feedRepository;
     }
 
+    @Transactional
     public ReviewDto create(NewReviewRequest request) {
         if (filmService.getById(request.getFilmId()) == null) {
             throw new NotFoundException("Фильм не найден: " + request.getFilmId());
@@ -64,6 +66,7 @@ public class ReviewService {
         return ReviewMapper.mapToReviewDto(updated);
     }
 
+    @Transactional
     public void delete(int reviewId) {
         Optional<Review> newReview = reviewRepository.getById(reviewId);
         if (newReview.isEmpty()) {
@@ -82,32 +85,35 @@ public class ReviewService {
         return ReviewMapper.mapToReviewDto(review);
     }
 
-    public List<ReviewDto> findReviews(Integer filmId, Integer count) {
+    public Page<ReviewDto> findReviews(Integer filmId, Integer count, String cursor) {
         int limit = (count == null) ? 10 : count;
-        List<Review> reviews = (filmId != null)
-                ? reviewRepository.getByFilmId(filmId, limit)
-                : reviewRepository.getAll(limit);
+        Cursor after = Cursor.decode(cursor);
+        Page<Review> reviews = (filmId != null)
+                ? reviewRepository.getByFilmId(filmId, after, limit)
+                : reviewRepository.getAll(after, limit);
 
-        return reviews.stream()
-                .map(ReviewMapper::mapToReviewDto)
-                .collect(Collectors.toList());
+        return reviews.map(ReviewMapper::mapToReviewDto);
     }
 
+    @Transactional
     public void addLike(int reviewId, int userId) {
         checkExistence(reviewId, userId);
         reviewRepository.addLike(reviewId, userId);
     }
 
+    @Transactional
     public void addDislike(int reviewId, int userId) {
         checkExistence(reviewId, userId);
         reviewRepository.addDislike(reviewId, userId);
     }
 
+    @Transactional
     public void removeLike(int reviewId, int userId) {
         checkExistence(reviewId, userId);
         reviewRepository.removeLike(reviewId, userId);
     }
 
+    @Transactional
     public void removeDislike(int reviewId, int userId) {
         checkExistence(reviewId, userId);
         reviewRepository.removeDislike(reviewId, userId);
@@ -3,8 +3,11 @@ package ru.yandex.practicum.filmorate.service;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.Cursor;
 import ru.yandex.practicum.filmorate.dal.FeedRepository;
 import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.FoundRepository;
+import ru.yandex.practicum.filmorate.dal.Page;
 import ru.yandex.practicum.filmorate.dal.UserRepository;
 import ru.yandex.practicum.filmorate.dto.*;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
@@ -13,6 +16,11 @@ import ru.yandex.practicum.filmorate.mappers.FeedMapper;
 import ru.yandex.practicum.filmorate.mappers.FilmMapper;
 import ru.yandex.practicum.filmorate.mappers.UserMapper;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.DirectorFilmIndex;
+import ru.yandex.practicum.filmorate.storage.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.LikeBitmapIndex;
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -22,12 +30,24 @@ public class UserService {
     private final UserRepository userRepository;
     private final FeedRepository feedRepository;
     private final FilmRepository filmRepository;
+    private final PopularityIndex popularityIndex;
+    private final LikeBitmapIndex likeBitmapIndex;
+    private final FriendGraph friendGraph;
+    private final DirectorFilmIndex directorFilmIndex;
+    private final SuggestTrie suggestTrie;
 
     @Autowired
-    public UserService(UserRepository userRepository, FeedRepository feedRepository, FilmRepository filmRepository) {
+    public UserService(UserRepository userRepository, FeedRepository feedRepository, FilmRepository filmRepository,
+                       PopularityIndex popularityIndex, LikeBitmapIndex likeBitmapIndex, FriendGraph friendGraph,
+                       DirectorFilmIndex directorFilmIndex, SuggestTrie suggestTrie) {
         this.userRepository = userRepository;
         this.feedRepository = feedRepository;
         this.filmRepository = filmRepository;
+        this.popularityIndex = popularityIndex;
+        this.likeBitmapIndex = likeBitmapIndex;
+        this.friendGraph = friendGraph;
+        this.directorFilmIndex = directorFilmIndex;
+        this.suggestTrie = suggestTrie;
     }
 
     public List<UserDto> getAll() {
@@ -36,6 +56,20 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    public List<UserDto> getByIds(List<Integer> ids) {
+        if (ids.isEmpty() || ids.size() > FoundRepository.MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество id должно быть от 1 до " + FoundRepository.MAX_PAGE_SIZE);
+        }
+        return userRepository.getByIds(ids.stream().distinct().toList()).stream()
+                .map(UserMapper::mapToUserDto)
+                .collect(Collectors.toList());
+    }
+
+    public Page<UserDto> getPage(String cursor, int limit) {
+        return userRepository.getPage(Cursor.decode(cursor), limit)
+                .map(UserMapper::mapToUserDto);
+    }
+
     public UserDto getById(int id) {
         Optional<User> mainUser = userRepository.getById(id);
 
@@ -94,6 +128,7 @@ public class UserService {
                                           " уже являются друзьями");
         }
         userRepository.addFriend(userId, friendId);
+        friendGraph.friendAdded(userId, friendId);
         feedRepository.create(new Feed(userId, friendId, EventType.FRIEND, Operation.ADD));
     }
 
@@ -106,6 +141,7 @@ public class UserService {
             throw new NotFoundException("Пользователь с id = " + friendId + " не найден");
         }
         userRepository.removeFriend(userId, friendId);
+        friendGraph.friendRemoved(userId, friendId);
         feedRepository.create(new Feed(userId, friendId, EventType.FRIEND, Operation.REMOVE));
     }
 
@@ -136,6 +172,30 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Фильмы, которые чаще всего лайкали друзья пользователя. Учитываются все друзья: в памяти подсчёт
+     * останавливается досрочно, когда оставшиеся друзья уже не меняют первые {@code count}; пока индексы
+     * в памяти не построены, считается в БД.
+     */
+    public List<FilmDto> getPopularAmongFriends(int userId, int count) {
+        if (userRepository.getById(userId).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        if (count <= 0 || count > FoundRepository.MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество фильмов должно быть от 1 до " + FoundRepository.MAX_PAGE_SIZE);
+        }
+        List<Integer> filmIds;
+        if (friendGraph.isReady() && likeBitmapIndex.isReady()) {
+            int[] friends = friendGraph.friends(userId);
+            filmIds = Arrays.stream(likeBitmapIndex.topLikedBy(friends, count)).boxed().toList();
+        } else {
+            filmIds = filmRepository.getPopularAmongFriendsIds(userId, count);
+        }
+        return filmRepository.getByIds(filmIds).stream()
+                .map(FilmMapper::mapToFilmDto)
+                .collect(Collectors.toList());
+    }
+
     public List<FeedDto> getFeed(int id) {
         Optional<User> maybeUser = userRepository.getById(id);
         if (maybeUser.isEmpty()) {
@@ -146,6 +206,14 @@ public class UserService {
                 .toList();
     }
 
+    public Page<FeedDto> getFeedPage(int id, String cursor, int limit) {
+        if (userRepository.getById(id).isEmpty()) {
+            throw new NotFoundException("Пользователь с id = " + id + " не найден");
+        }
+        return feedRepository.getPageByUserId(id, Cursor.decode(cursor), limit)
+                .map(FeedMapper::mapToEventDto);
+    }
+
     /**
      * @param userId
      * @return list of filmDto recommended for user
@@ -157,6 +225,12 @@ public class UserService {
     public List<FilmDto> getRecommendations(int userId) {
         userRepository.getById(userId)
                 .orElseThrow(() -> new NotFoundException("Пользователь с id = " + userId + " не найден"));
+        if (likeBitmapIndex.isReady()) {
+            List<Integer> filmIds = Arrays.stream(likeBitmapIndex.recommend(userId)).boxed().toList();
+            return filmRepository.getByIds(filmIds).stream()
+                    .map(FilmMapper::mapToFilmDto)
+                    .collect(Collectors.toList());
+        }
         List<Film> userLikedFilms = Optional.ofNullable(filmRepository.getLikedFilmsByUser(userId))
                 .orElse(Collections.emptyList());
         Map<Integer, List<Film>> userLikedFilmsMap = userRepository.getAllUsersWhoLikedFilms();
@@ -178,10 +252,17 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional
     public void deleteById(int userId) {
         if (userRepository.getById(userId).isEmpty()) {
             throw new NotFoundException("Пользователь с id = " + userId + " не найден");
         }
+        List<Integer> likedFilmIds = filmRepository.getLikedFilmIds(userId);
         userRepository.deleteById(userId);
+        popularityIndex.likesRemoved(likedFilmIds);
+        directorFilmIndex.likesRemoved(likedFilmIds);
+        suggestTrie.likesRemoved(likedFilmIds);
+        likeBitmapIndex.userRemoved(userId);
+        friendGraph.userRemoved(userId);
     }
 }
\ No newline at end of file
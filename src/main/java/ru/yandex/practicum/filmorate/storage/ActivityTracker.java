@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Самые активные пользователи и объекты событий ленты по алгоритму Space-Saving: на каждую сводку
+ * хранится не больше {@code capacity} счётчиков, а новый ключ при заполнении вытесняет минимальный,
+ * наследуя его значение как погрешность. Ключ с частотой выше {@code events / capacity} гарантированно
+ * присутствует в сводке. Сводки ведутся по всем событиям, по типу события и по операции; раз в
+ * {@code window} они сбрасываются, а предыдущее окно остаётся доступным целиком.
+ */
+@Component
+public class ActivityTracker {
+    private final int capacity;
+    private Window current;
+    private Window previous;
+
+    public ActivityTracker(@Value("${filmorate.activity.capacity:100}") int capacity) {
+        this.capacity = capacity;
+        this.current = new Window(capacity);
+    }
+
+    public void record(Feed feed) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                current.record(feed);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.activity.window-ms:600000}",
+            initialDelayString = "${filmorate.activity.window-ms:600000}")
+    public synchronized void rotate() {
+        previous = current;
+        current = new Window(capacity);
+    }
+
+    /**
+     * Не больше {@code limit} самых активных ключей каждой сводки текущего и предыдущего окна.
+     */
+    public synchronized Snapshot snapshot(int limit) {
+        return new Snapshot(current.snapshot(limit), previous == null ? null : previous.snapshot(limit));
+    }
+
+    public record Snapshot(WindowStats current, WindowStats previous) {
+    }
+
+    /**
+     * Сводки одного окна. {@code entities} — id объектов события: фильма для лайков, отзыва для отзывов,
+     * пользователя для дружбы.
+     */
+    public record WindowStats(Instant since, long events, List<HeavyHitter> users,
+                              Map<EventType, EventTypeStats> byEventType,
+                              Map<Operation, List<HeavyHitter>> byOperation) {
+    }
+
+    public record EventTypeStats(long events, List<HeavyHitter> users, List<HeavyHitter> entities) {
+    }
+
+    /**
+     * Оценка сверху числа событий ключа; истинное значение не меньше {@code count - error}.
+     */
+    public record HeavyHitter(int id, long count, long error) {
+    }
+
+    private static final class Window {
+        private final Instant since = Instant.now();
+        private final SpaceSaving users;
+        private final Map<EventType, SpaceSaving> usersByType = new EnumMap<>(EventType.class);
+        private final Map<EventType, SpaceSaving> entitiesByType = new EnumMap<>(EventType.class);
+        private final Map<Operation, SpaceSaving> usersByOperation = new EnumMap<>(Operation.class);
+
+        Window(int capacity) {
+            users = new SpaceSaving(capacity);
+            for (EventType type : EventType.values()) {
+                usersByType.put(type, new SpaceSaving(capacity));
+                entitiesByType.put(type, new SpaceSaving(capacity));
+            }
+            for (Operation operation : Operation.values()) {
+                usersByOperation.put(operation, new SpaceSaving(capacity));
+            }
+        }
+
+        void record(Feed feed) {
+            users.add(feed.getUserId());
+            usersByType.get(feed.getEventType()).add(feed.getUserId());
+            entitiesByType.get(feed.getEventType()).add(feed.getEntityId());
+            usersByOperation.get(feed.getOperation()).add(feed.getUserId());
+        }
+
+        WindowStats snapshot(int limit) {
+            Map<EventType, EventTypeStats> byType = new EnumMap<>(EventType.class);
+            usersByType.forEach((type, summary) -> byType.put(type, new EventTypeStats(summary.events(),
+                    summary.top(limit), entitiesByType.get(type).top(limit))));
+            Map<Operation, List<HeavyHitter>> byOperation = new EnumMap<>(Operation.class);
+            usersByOperation.forEach((operation, summary) -> byOperation.put(operation, summary.top(limit)));
+            return new WindowStats(since, users.events(), users.top(limit), byType, byOperation);
+        }
+    }
+
+    private static final class SpaceSaving {
+        private static final Comparator<Counter> ORDER = Comparator.comparingLong(Counter::count)
+                .thenComparingInt(Counter::id);
+
+        private final int capacity;
+        private final Map<Integer, Counter> counters = new HashMap<>();
+        private final TreeSet<Counter> ordered = new TreeSet<>(ORDER);
+        private long events;
+
+        SpaceSaving(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void add(int id) {
+            events++;
+            Counter counter = counters.get(id);
+            if (counter != null) {
+                ordered.remove(counter);
+                counter = new Counter(id, counter.count() + 1, counter.error());
+            } else if (counters.size() < capacity) {
+                counter = new Counter(id, 1, 0);
+            } else {
+                Counter evicted = ordered.pollFirst();
+                counters.remove(evicted.id());
+                counter = new Counter(id, evicted.count() + 1, evicted.count());
+            }
+            counters.put(id, counter);
+            ordered.add(counter);
+        }
+
+        long events() {
+            return events;
+        }
+
+        List<HeavyHitter> top(int limit) {
+            List<HeavyHitter> top = new ArrayList<>(Math.min(limit, ordered.size()));
+            for (Counter counter : ordered.descendingSet()) {
+                if (top.size() == limit) {
+                    break;
+                }
+                top.add(new HeavyHitter(counter.id(), counter.count(), counter.error()));
+            }
+            return top;
+        }
+
+        private record Counter(int id, long count, long error) {
+        }
+    }
+}
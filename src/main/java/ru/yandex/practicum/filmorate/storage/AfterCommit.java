@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Откладывает изменение in-memory структур до коммита текущей транзакции, чтобы откат в базе
+ * не оставлял в памяти изменений, которых нет в таблицах. Вне транзакции действие выполняется сразу.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class AfterCommit {
+
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Монотонные счётчики версий наборов данных. Репозитории увеличивают счётчик при каждой записи,
+ * а кэши ответов сравнивают с ним сохранённую версию. Внутри транзакции счётчик увеличивается ещё раз
+ * после коммита, чтобы читатель не закэшировал под новой версией ещё не видимые ему данные.
+ * Счётчики живут в памяти, поэтому к ним прилагается эпоха — момент старта приложения.
+ */
+@Component
+public class DataVersions {
+    public enum Table {
+        FILMS, LIKES, DIRECTORS, GENRES, RATINGS, FRIENDS
+    }
+
+    private final Map<Table, AtomicLong> versions = new EnumMap<>(Table.class);
+    private final long epoch = System.currentTimeMillis();
+
+    public DataVersions() {
+        for (Table table : Table.values()) {
+            versions.put(table, new AtomicLong());
+        }
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    public long get(Table table) {
+        return versions.get(table).get();
+    }
+
+    public long sum(Table... tables) {
+        long sum = 0;
+        for (Table table : tables) {
+            sum += get(table);
+        }
+        return sum;
+    }
+
+    public void bump(Table table) {
+        AtomicLong version = versions.get(table);
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dto.FilmField;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+
+/**
+ * Фильмографии режиссёров в памяти: для каждого режиссёра два упорядоченных множества id фильмов —
+ * по убыванию лайков и по дате выхода (оба с добором по {@code film_id}, как в SQL-запросах). Запрос
+ * {@code /films/director/{id}} сводится к обходу множества; лайк или правка фильма переставляет его
+ * только в фильмографиях его режиссёров. Перестройка устроена так же, как у {@link PopularityIndex}.
+ */
+@Component
+public class DirectorFilmIndex {
+    private static final Logger log = LoggerFactory.getLogger(DirectorFilmIndex.class);
+    private static final Comparator<FilmStats> BY_LIKES = Comparator.comparingLong(FilmStats::likes).reversed()
+            .thenComparingInt(FilmStats::filmId);
+    private static final Comparator<FilmStats> BY_YEAR = Comparator.comparingLong(FilmStats::releaseEpochDay)
+            .thenComparingInt(FilmStats::filmId);
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.DIRECTORS);
+
+    private final FilmRepository filmRepository;
+    private final Map<Integer, FilmStats> films = new HashMap<>();
+    private final Map<Integer, Filmography> filmographies = new HashMap<>();
+    private final Set<Integer> touchedDuringRebuild = new HashSet<>();
+    private boolean rebuilding;
+    private volatile boolean ready;
+
+    public DirectorFilmIndex(FilmRepository filmRepository) {
+        this.filmRepository = filmRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            rebuilding = true;
+            touchedDuringRebuild.clear();
+        }
+        List<Film> all = filmRepository.getAll(INDEXED_FIELDS);
+        Map<Integer, Long> likes = filmRepository.getLikeCounts();
+        synchronized (this) {
+            films.clear();
+            filmographies.clear();
+            for (Film film : all) {
+                index(toStats(film, likes.getOrDefault(film.getId(), 0L)));
+            }
+        }
+        while (true) {
+            Set<Integer> pending;
+            synchronized (this) {
+                if (touchedDuringRebuild.isEmpty()) {
+                    rebuilding = false;
+                    ready = true;
+                    log.debug("Индекс фильмографий перестроен: {} режиссёров", filmographies.size());
+                    return;
+                }
+                pending = new HashSet<>(touchedDuringRebuild);
+                touchedDuringRebuild.clear();
+            }
+            for (int filmId : pending) {
+                Optional<Film> film = filmRepository.getById(filmId);
+                long filmLikes = film.isPresent() ? filmRepository.getLikeCount(filmId) : 0;
+                synchronized (this) {
+                    unindex(filmId);
+                    film.ifPresent(found -> index(toStats(found, filmLikes)));
+                }
+            }
+        }
+    }
+
+    public void likeAdded(int filmId) {
+        AfterCommit.run(() -> adjust(filmId, 1));
+    }
+
+    public void likeRemoved(int filmId) {
+        AfterCommit.run(() -> adjust(filmId, -1));
+    }
+
+    public void likesRemoved(Collection<Integer> filmIds) {
+        List<Integer> ids = List.copyOf(filmIds);
+        AfterCommit.run(() -> ids.forEach(filmId -> adjust(filmId, -1)));
+    }
+
+    /**
+     * Регистрирует новый фильм или изменённые дату выхода и режиссёров существующего; число лайков
+     * сохраняется.
+     */
+    public void filmSaved(Film film) {
+        FilmStats stats = toStats(film, 0);
+        AfterCommit.run(() -> save(stats));
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> remove(filmId));
+    }
+
+    public void directorRemoved(int directorId) {
+        AfterCommit.run(() -> removeDirector(directorId));
+    }
+
+    /**
+     * Id фильмов режиссёра по убыванию лайков.
+     */
+    public synchronized List<Integer> byLikes(int directorId) {
+        Filmography filmography = filmographies.get(directorId);
+        return filmography == null ? List.of() : ids(filmography.byLikes());
+    }
+
+    /**
+     * Id фильмов режиссёра по дате выхода.
+     */
+    public synchronized List<Integer> byYear(int directorId) {
+        Filmography filmography = filmographies.get(directorId);
+        return filmography == null ? List.of() : ids(filmography.byYear());
+    }
+
+    private synchronized void adjust(int filmId, long delta) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(filmId);
+            return;
+        }
+        FilmStats stats = films.get(filmId);
+        if (stats == null) {
+            return;
+        }
+        unindex(filmId);
+        index(stats.withLikes(Math.max(0, stats.likes() + delta)));
+    }
+
+    private synchronized void save(FilmStats stats) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(stats.filmId());
+            return;
+        }
+        FilmStats previous = unindex(stats.filmId());
+        index(previous == null ? stats : stats.withLikes(previous.likes()));
+    }
+
+    private synchronized void remove(int filmId) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(filmId);
+            return;
+        }
+        unindex(filmId);
+    }
+
+    private synchronized void removeDirector(int directorId) {
+        Filmography filmography = filmographies.remove(directorId);
+        if (filmography == null) {
+            return;
+        }
+        for (FilmStats stats : filmography.byLikes()) {
+            if (rebuilding) {
+                touchedDuringRebuild.add(stats.filmId());
+            } else {
+                unindex(stats.filmId());
+                index(stats.withoutDirector(directorId));
+            }
+        }
+    }
+
+    private void index(FilmStats stats) {
+        films.put(stats.filmId(), stats);
+        for (int directorId : stats.directorIds()) {
+            Filmography filmography = filmographies.computeIfAbsent(directorId,
+                    id -> new Filmography(new TreeSet<>(BY_LIKES), new TreeSet<>(BY_YEAR)));
+            filmography.byLikes().add(stats);
+            filmography.byYear().add(stats);
+        }
+    }
+
+    private FilmStats unindex(int filmId) {
+        FilmStats stats = films.remove(filmId);
+        if (stats == null) {
+            return null;
+        }
+        for (int directorId : stats.directorIds()) {
+            Filmography filmography = filmographies.get(directorId);
+            if (filmography != null) {
+                filmography.byLikes().remove(stats);
+                filmography.byYear().remove(stats);
+                if (filmography.byLikes().isEmpty()) {
+                    filmographies.remove(directorId);
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static List<Integer> ids(Collection<FilmStats> ordered) {
+        List<Integer> ids = new ArrayList<>(ordered.size());
+        for (FilmStats stats : ordered) {
+            ids.add(stats.filmId());
+        }
+        return ids;
+    }
+
+    private static FilmStats toStats(Film film, long likes) {
+        int[] directorIds = film.getDirectors() == null ? new int[0] : film.getDirectors().stream()
+                .mapToInt(Director::getId)
+                .distinct()
+                .toArray();
+        return new FilmStats(film.getId(), film.getReleaseDate().toEpochDay(), directorIds, likes);
+    }
+
+    private record Filmography(TreeSet<FilmStats> byLikes, TreeSet<FilmStats> byYear) {
+    }
+
+    private record FilmStats(int filmId, long releaseEpochDay, int[] directorIds, long likes) {
+        FilmStats withLikes(long newLikes) {
+            return new FilmStats(filmId, releaseEpochDay, directorIds, newLikes);
+        }
+
+        FilmStats withoutDirector(int directorId) {
+            return new FilmStats(filmId, releaseEpochDay,
+                    Arrays.stream(directorIds).filter(id -> id != directorId).toArray(), likes);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dto.FilmField;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+
+/**
+ * Фасетный индекс каталога. Для каждого жанра, рейтинга MPA и режиссёра хранится битовая карта id
+ * фильмов, для года выхода и продолжительности — массивы значений, отсортированные вместе с id.
+ * Фильтр собирается пересечением карт (значения одного фасета объединяются), диапазон — двоичным
+ * поиском по массиву. Счётчик значения фасета — мощность пересечения его карты с выборкой по всем
+ * остальным фасетам, так что интерфейс видит, сколько фильмов даст переключение на это значение.
+ */
+@Component
+public class FacetIndex {
+    private static final Logger log = LoggerFactory.getLogger(FacetIndex.class);
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.RELEASE_DATE,
+            FilmField.DURATION, FilmField.MPA, FilmField.GENRES, FilmField.DIRECTORS);
+
+    private final FilmRepository filmRepository;
+    private final Map<Integer, Facets> films = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byGenre = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byRating = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byDirector = new HashMap<>();
+    private final RangeColumn years = new RangeColumn();
+    private final RangeColumn durations = new RangeColumn();
+    private RoaringBitmap all = new RoaringBitmap();
+    private List<Runnable> replayLog;
+    private volatile boolean ready;
+
+    public FacetIndex(FilmRepository filmRepository) {
+        this.filmRepository = filmRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            replayLog = new ArrayList<>();
+        }
+        List<Film> loaded = filmRepository.getAll(INDEXED_FIELDS);
+        synchronized (this) {
+            films.clear();
+            byGenre.clear();
+            byRating.clear();
+            byDirector.clear();
+            years.clear();
+            durations.clear();
+            all = new RoaringBitmap();
+            loaded.forEach(film -> saveFilm(toFacets(film)));
+            List<Runnable> pending = replayLog;
+            replayLog = null;
+            pending.forEach(Runnable::run);
+            ready = true;
+            log.debug("Фасетный индекс перестроен: {} фильмов", films.size());
+        }
+    }
+
+    public void filmSaved(Film film) {
+        Facets facets = toFacets(film);
+        AfterCommit.run(() -> apply(() -> saveFilm(facets)));
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> apply(() -> removeFilm(filmId)));
+    }
+
+    public void directorRemoved(int directorId) {
+        AfterCommit.run(() -> apply(() -> {
+            RoaringBitmap directed = byDirector.remove(directorId);
+            if (directed != null) {
+                directed.forEach(filmId -> films.computeIfPresent(filmId,
+                        (id, facets) -> facets.withoutDirector(directorId)));
+            }
+        }));
+    }
+
+    /**
+     * Страница id подходящих под фильтр фильмов по возрастанию (после {@code afterId}, если он задан),
+     * их общее число и счётчики значений фасетов.
+     */
+    public synchronized Result browse(Filter filter, Integer afterId, int limit) {
+        RoaringBitmap ranged = all;
+        if (filter.yearFrom() != null || filter.yearTo() != null) {
+            ranged = ranged.and(years.range(filter.yearFrom(), filter.yearTo()));
+        }
+        if (filter.durationFrom() != null || filter.durationTo() != null) {
+            ranged = ranged.and(durations.range(filter.durationFrom(), filter.durationTo()));
+        }
+        RoaringBitmap genres = union(byGenre, filter.genreIds());
+        RoaringBitmap ratings = union(byRating, filter.ratingIds());
+        RoaringBitmap directors = union(byDirector, filter.directorIds());
+
+        int[] matched = and(and(and(ranged, genres), ratings), directors).toArray();
+        int from = 0;
+        if (afterId != null) {
+            int position = Arrays.binarySearch(matched, afterId);
+            from = position >= 0 ? position + 1 : -position - 1;
+        }
+        int to = Math.min(matched.length, from + limit);
+        return new Result(matched.length,
+                Arrays.copyOfRange(matched, from, to),
+                to < matched.length,
+                counts(byGenre, and(and(ranged, ratings), directors)),
+                counts(byRating, and(and(ranged, genres), directors)),
+                counts(byDirector, and(and(ranged, genres), ratings)));
+    }
+
+    private synchronized void apply(Runnable change) {
+        if (replayLog != null) {
+            replayLog.add(change);
+            return;
+        }
+        change.run();
+    }
+
+    private void saveFilm(Facets facets) {
+        removeFilm(facets.filmId());
+        int filmId = facets.filmId();
+        films.put(filmId, facets);
+        all.add(filmId);
+        for (int genreId : facets.genreIds()) {
+            byGenre.computeIfAbsent(genreId, id -> new RoaringBitmap()).add(filmId);
+        }
+        if (facets.ratingId() != null) {
+            byRating.computeIfAbsent(facets.ratingId(), id -> new RoaringBitmap()).add(filmId);
+        }
+        for (int directorId : facets.directorIds()) {
+            byDirector.computeIfAbsent(directorId, id -> new RoaringBitmap()).add(filmId);
+        }
+        if (facets.year() != null) {
+            years.put(filmId, facets.year());
+        }
+        durations.put(filmId, facets.duration());
+    }
+
+    private void removeFilm(int filmId) {
+        Facets facets = films.remove(filmId);
+        if (facets == null) {
+            return;
+        }
+        all.remove(filmId);
+        for (int genreId : facets.genreIds()) {
+            removeFrom(byGenre, genreId, filmId);
+        }
+        if (facets.ratingId() != null) {
+            removeFrom(byRating, facets.ratingId(), filmId);
+        }
+        for (int directorId : facets.directorIds()) {
+            removeFrom(byDirector, directorId, filmId);
+        }
+        years.remove(filmId);
+        durations.remove(filmId);
+    }
+
+    private static void removeFrom(Map<Integer, RoaringBitmap> bitmaps, int value, int filmId) {
+        RoaringBitmap bitmap = bitmaps.get(value);
+        if (bitmap != null && bitmap.remove(filmId) && bitmap.isEmpty()) {
+            bitmaps.remove(value);
+        }
+    }
+
+    /**
+     * Объединение карт выбранных значений фасета или {@code null}, если по фасету не фильтруют.
+     */
+    private static RoaringBitmap union(Map<Integer, RoaringBitmap> bitmaps, Set<Integer> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        RoaringBitmap result = new RoaringBitmap();
+        for (int value : values) {
+            RoaringBitmap bitmap = bitmaps.get(value);
+            if (bitmap != null) {
+                result = result.or(bitmap);
+            }
+        }
+        return result;
+    }
+
+    private static RoaringBitmap and(RoaringBitmap first, RoaringBitmap second) {
+        return second == null ? first : first.and(second);
+    }
+
+    private static Map<Integer, Integer> counts(Map<Integer, RoaringBitmap> bitmaps, RoaringBitmap base) {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        for (Map.Entry<Integer, RoaringBitmap> entry : bitmaps.entrySet()) {
+            int count = base.andCardinality(entry.getValue());
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    private static Facets toFacets(Film film) {
+        int[] genreIds = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .toArray();
+        int[] directorIds = film.getDirectors() == null ? new int[0] : film.getDirectors().stream()
+                .mapToInt(Director::getId)
+                .distinct()
+                .toArray();
+        return new Facets(film.getId(), genreIds, film.getMpa() == null ? null : film.getMpa().getId(), directorIds,
+                film.getReleaseDate() == null ? null : film.getReleaseDate().getYear(), film.getDuration());
+    }
+
+    /**
+     * Фильтр каталога: значения внутри одного фасета объединяются, фасеты и диапазоны пересекаются.
+     * Пустой набор значений или {@code null} в границе диапазона означает отсутствие ограничения.
+     */
+    public record Filter(Set<Integer> genreIds, Set<Integer> ratingIds, Set<Integer> directorIds,
+                         Integer yearFrom, Integer yearTo, Integer durationFrom, Integer durationTo) {
+    }
+
+    public record Result(int total, int[] filmIds, boolean hasMore, Map<Integer, Integer> genreCounts,
+                         Map<Integer, Integer> ratingCounts, Map<Integer, Integer> directorCounts) {
+    }
+
+    private record Facets(int filmId, int[] genreIds, Integer ratingId, int[] directorIds, Integer year,
+                          int duration) {
+
+        Facets withoutDirector(int directorId) {
+            return new Facets(filmId, genreIds, ratingId,
+                    Arrays.stream(directorIds).filter(other -> other != directorId).toArray(), year, duration);
+        }
+    }
+
+    /**
+     * Числовой атрибут фильмов. Изменения пишутся в словарь, а отсортированные массивы значений и
+     * id пересобираются при первом запросе после изменения.
+     */
+    private static final class RangeColumn {
+        private final Map<Integer, Integer> valueByFilm = new HashMap<>();
+        private int[] values = new int[0];
+        private int[] filmIds = new int[0];
+        private boolean dirty;
+
+        void clear() {
+            valueByFilm.clear();
+            dirty = true;
+        }
+
+        void put(int filmId, int value) {
+            if (!Objects.equals(valueByFilm.put(filmId, value), value)) {
+                dirty = true;
+            }
+        }
+
+        void remove(int filmId) {
+            if (valueByFilm.remove(filmId) != null) {
+                dirty = true;
+            }
+        }
+
+        /**
+         * Фильмы со значением в {@code [from, to]}; {@code null} — граница не задана.
+         */
+        RoaringBitmap range(Integer from, Integer to) {
+            if (dirty) {
+                sort();
+            }
+            int start = from == null ? 0 : lowerBound(from);
+            int end = to == null || to == Integer.MAX_VALUE ? values.length : lowerBound(to + 1);
+            int[] ids = Arrays.copyOfRange(filmIds, start, Math.max(start, end));
+            Arrays.sort(ids);
+            RoaringBitmap result = new RoaringBitmap();
+            for (int id : ids) {
+                result.add(id);
+            }
+            return result;
+        }
+
+        private int lowerBound(int value) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void sort() {
+            long[] packed = new long[valueByFilm.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry : valueByFilm.entrySet()) {
+                packed[i++] = (long) entry.getValue() << 32 | (entry.getKey() & 0xFFFFFFFFL);
+            }
+            Arrays.sort(packed);
+            values = new int[packed.length];
+            filmIds = new int[packed.length];
+            for (int j = 0; j < packed.length; j++) {
+                values[j] = (int) (packed[j] >> 32);
+                filmIds[j] = (int) packed[j];
+            }
+            dirty = false;
+        }
+    }
+}
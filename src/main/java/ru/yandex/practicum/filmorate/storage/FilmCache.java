@@ -0,0 +1,283 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.mappers.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный по «весу» кэш фильмов с допуском в стиле W-TinyLFU: новые записи попадают в маленькое
+ * LRU-окно, а вытесненные из окна допускаются в основную область, только если встречались чаще жертвы.
+ * Вес фильма — число объектов в нём (сам фильм, жанры, режиссёры). Наружу отдаются копии фильмов.
+ */
+@Component
+public class FilmCache {
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final LinkedHashMap<Integer, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long windowWeight;
+    private long mainWeight;
+    private long generation;
+
+    public FilmCache(@Value("${filmorate.cache.films.max-weight:10000}") long maxWeight) {
+        this.maxWeight = Math.max(2, maxWeight);
+        this.windowMaxWeight = Math.max(1, this.maxWeight / 100);
+        this.sketch = new FrequencySketch(this.maxWeight);
+    }
+
+    public synchronized Film get(int filmId) {
+        sketch.increment(filmId);
+        Entry entry = window.get(filmId);
+        if (entry == null) {
+            entry = main.get(filmId);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return FilmMapper.copyFilm(entry.film());
+    }
+
+    /**
+     * Поколение кэша: меняется при каждой инвалидации. Загрузчик запоминает его до чтения из базы
+     * и передаёт в {@link #put(Film, long)}, чтобы не положить в кэш данные, устаревшие во время загрузки.
+     * Внутри транзакции инвалидация повторяется после её завершения: до коммита параллельный читатель
+     * ещё видит старую строку и мог положить её в кэш уже с новым поколением.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void put(Film film, long expectedGeneration) {
+        if (expectedGeneration != generation) {
+            return;
+        }
+        removeEntry(film.getId());
+        Entry entry = new Entry(FilmMapper.copyFilm(film), weigh(film));
+        if (entry.weight() > maxWeight - windowMaxWeight) {
+            return;
+        }
+        window.put(film.getId(), entry);
+        windowWeight += entry.weight();
+        while (windowWeight > windowMaxWeight) {
+            Map.Entry<Integer, Entry> candidate = pollFirst(window);
+            windowWeight -= candidate.getValue().weight();
+            admit(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    public void invalidate(int filmId) {
+        evict(filmId);
+        afterCompletion(() -> evict(filmId));
+    }
+
+    public void invalidateByDirector(int directorId) {
+        evictByDirector(directorId);
+        afterCompletion(() -> evictByDirector(directorId));
+    }
+
+    public void invalidateAll() {
+        evictAll();
+        afterCompletion(this::evictAll);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), window.size() + main.size(),
+                windowWeight + mainWeight, maxWeight);
+    }
+
+    private synchronized void evict(int filmId) {
+        generation++;
+        removeEntry(filmId);
+    }
+
+    private synchronized void evictByDirector(int directorId) {
+        generation++;
+        removeIf(window, directorId, true);
+        removeIf(main, directorId, false);
+    }
+
+    private synchronized void evictAll() {
+        generation++;
+        window.clear();
+        main.clear();
+        windowWeight = 0;
+        mainWeight = 0;
+    }
+
+    /**
+     * Кандидат из окна попадает в основную область, только если встречался чаще каждой из жертв,
+     * которых придётся вытеснить ради его веса. Жертвы подбираются заранее с LRU-конца, и при отказе
+     * основная область не меняется.
+     */
+    private void admit(int filmId, Entry candidate) {
+        long excess = mainWeight + candidate.weight() - (maxWeight - windowMaxWeight);
+        List<Integer> victims = new ArrayList<>();
+        int candidateFrequency = sketch.frequency(filmId);
+        Iterator<Map.Entry<Integer, Entry>> iterator = main.entrySet().iterator();
+        while (excess > 0) {
+            Map.Entry<Integer, Entry> victim = iterator.next();
+            if (candidateFrequency <= sketch.frequency(victim.getKey())) {
+                evictions.incrementAndGet();
+                return;
+            }
+            victims.add(victim.getKey());
+            excess -= victim.getValue().weight();
+        }
+        for (int victimId : victims) {
+            mainWeight -= main.remove(victimId).weight();
+            evictions.incrementAndGet();
+        }
+        main.put(filmId, candidate);
+        mainWeight += candidate.weight();
+    }
+
+    private static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private void removeEntry(int filmId) {
+        Entry entry = window.remove(filmId);
+        if (entry != null) {
+            windowWeight -= entry.weight();
+        }
+        entry = main.remove(filmId);
+        if (entry != null) {
+            mainWeight -= entry.weight();
+        }
+    }
+
+    private void removeIf(Map<Integer, Entry> region, int directorId, boolean isWindow) {
+        Iterator<Entry> iterator = region.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (hasDirector(entry.film(), directorId)) {
+                iterator.remove();
+                if (isWindow) {
+                    windowWeight -= entry.weight();
+                } else {
+                    mainWeight -= entry.weight();
+                }
+            }
+        }
+    }
+
+    private static boolean hasDirector(Film film, int directorId) {
+        if (film.getDirectors() == null) {
+            return false;
+        }
+        for (Director director : film.getDirectors()) {
+            if (director.getId() == directorId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map.Entry<Integer, Entry> pollFirst(LinkedHashMap<Integer, Entry> region) {
+        Iterator<Map.Entry<Integer, Entry>> iterator = region.entrySet().iterator();
+        Map.Entry<Integer, Entry> first = iterator.next();
+        Map.Entry<Integer, Entry> polled = Map.entry(first.getKey(), first.getValue());
+        iterator.remove();
+        return polled;
+    }
+
+    private static long weigh(Film film) {
+        long weight = 1;
+        if (film.getGenres() != null) {
+            weight += film.getGenres().size();
+        }
+        if (film.getDirectors() != null) {
+            weight += film.getDirectors().size();
+        }
+        return weight;
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, long weight, long maxWeight) {
+    }
+
+    private record Entry(Film film, long weight) {
+    }
+
+    /**
+     * Count-Min sketch с 4-битными по смыслу счётчиками (насыщение на 15) и периодическим
+     * делением пополам, чтобы старая популярность со временем забывалась.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] table;
+        private final int mask;
+        private final long sampleSize;
+        private long additions;
+
+        FrequencySketch(long maxWeight) {
+            int width = Integer.highestOneBit((int) Math.min(1 << 24, Math.max(16, maxWeight)) - 1) << 1;
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = 10L * width;
+        }
+
+        void increment(int key) {
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int idx = index(key, row);
+                if (table[row][idx] < MAX_COUNT) {
+                    table[row][idx]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int key) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, table[row][index(key, row)]);
+            }
+            return min;
+        }
+
+        private int index(int key, int row) {
+            int h = key * SEEDS[row];
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >> 1);
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
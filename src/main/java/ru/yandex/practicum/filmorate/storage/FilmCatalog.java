@@ -0,0 +1,271 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Неизменяемый снимок всего каталога фильмов в памяти. Фильмы замораживаются один раз при публикации:
+ * их сеттеры и коллекции бросают {@link UnsupportedOperationException}, поэтому читатели без блокировок
+ * и копирования получают общие экземпляры и общий список. Изменения публикуют новую версию снимка
+ * (copy-on-write) после коммита транзакции, так что незакоммиченные и откатившиеся фильмы в снимок не
+ * попадают. Включается свойством {@code filmorate.catalog.snapshot-enabled}.
+ */
+@Component
+public class FilmCatalog {
+    private static final Logger log = LoggerFactory.getLogger(FilmCatalog.class);
+
+    private final FilmRepository filmRepository;
+    private final boolean enabled;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), List.of(), 0);
+
+    public FilmCatalog(FilmRepository filmRepository,
+                       @Value("${filmorate.catalog.snapshot-enabled:false}") boolean enabled) {
+        this.filmRepository = filmRepository;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<Film> getAll() {
+        return snapshot.films();
+    }
+
+    public Optional<Film> getById(int filmId) {
+        return Optional.ofNullable(snapshot.filmsById().get(filmId));
+    }
+
+    public synchronized void reload() {
+        if (!enabled) {
+            return;
+        }
+        Map<Integer, Film> films = new TreeMap<>();
+        for (Film film : filmRepository.getAll()) {
+            films.put(film.getId(), freeze(film));
+        }
+        publish(films);
+        log.debug("Снимок каталога перестроен: {} фильмов, версия {}", films.size(), snapshot.version());
+    }
+
+    public void put(Film film) {
+        if (!enabled) {
+            return;
+        }
+        Film frozen = freeze(film);
+        AfterCommit.run(() -> store(frozen));
+    }
+
+    /**
+     * Перечитывает фильм из базы после коммита: нужно, когда у сохранённого объекта неполные данные
+     * (например, жанры из запроса без названий).
+     */
+    public void refresh(int filmId) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> refreshFilms(List.of(filmId)));
+    }
+
+    /**
+     * После коммита перечитывает только фильмы режиссёра, изменённого или удалённого в транзакции.
+     */
+    public void refreshDirector(int directorId) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> refreshFilms(snapshot.films().stream()
+                .filter(film -> film.getDirectors().stream().anyMatch(director -> director.getId() == directorId))
+                .map(Film::getId)
+                .toList()));
+    }
+
+    public void remove(int filmId) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> drop(filmId));
+    }
+
+    private synchronized void store(Film film) {
+        Map<Integer, Film> films = new TreeMap<>(snapshot.filmsById());
+        films.put(film.getId(), film);
+        publish(films);
+    }
+
+    private void refreshFilms(List<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Film> loaded = new HashMap<>();
+        filmRepository.getByIds(filmIds).forEach(film -> loaded.put(film.getId(), freeze(film)));
+        synchronized (this) {
+            Map<Integer, Film> films = new TreeMap<>(snapshot.filmsById());
+            for (int filmId : filmIds) {
+                Film film = loaded.get(filmId);
+                if (film == null) {
+                    films.remove(filmId);
+                } else {
+                    films.put(filmId, film);
+                }
+            }
+            publish(films);
+        }
+    }
+
+    private synchronized void drop(int filmId) {
+        if (!snapshot.filmsById().containsKey(filmId)) {
+            return;
+        }
+        Map<Integer, Film> films = new TreeMap<>(snapshot.filmsById());
+        films.remove(filmId);
+        publish(films);
+    }
+
+    private void publish(Map<Integer, Film> films) {
+        snapshot = new Snapshot(Collections.unmodifiableMap(films), List.copyOf(films.values()),
+                snapshot.version() + 1);
+    }
+
+    private static Film freeze(Film film) {
+        return new FrozenFilm(film);
+    }
+
+    private record Snapshot(Map<Integer, Film> filmsById, List<Film> films, long version) {
+    }
+
+    private static final class FrozenFilm extends Film {
+
+        FrozenFilm(Film film) {
+            super.setId(film.getId());
+            super.setName(film.getName());
+            super.setDescription(film.getDescription());
+            super.setReleaseDate(film.getReleaseDate());
+            super.setDuration(film.getDuration());
+            super.setMpa(film.getMpa() == null ? null : new FrozenRating(film.getMpa()));
+            super.setGenres(film.getGenres() == null ? Set.of() : film.getGenres().stream()
+                    .map(FrozenGenre::new)
+                    .collect(Collectors.toUnmodifiableSet()));
+            super.setDirectors(film.getDirectors() == null ? List.of() : film.getDirectors().stream()
+                    .<Director>map(FrozenDirector::new)
+                    .toList());
+            super.setLikes(film.getLikes() == null ? Set.of() : Set.copyOf(film.getLikes()));
+        }
+
+        @Override
+        public void setId(Integer id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setDescription(String description) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setReleaseDate(LocalDate releaseDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setDuration(int duration) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setMpa(Rating mpa) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setGenres(Set<Genre> genres) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setDirectors(List<Director> directors) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setLikes(Set<Integer> likes) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class FrozenRating extends Rating {
+
+        FrozenRating(Rating rating) {
+            super(rating.getId(), rating.getName());
+        }
+
+        @Override
+        public void setId(Integer id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class FrozenGenre extends Genre {
+
+        FrozenGenre(Genre genre) {
+            super(genre.getId(), genre.getName());
+        }
+
+        @Override
+        public void setId(Integer id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class FrozenDirector extends Director {
+
+        FrozenDirector(Director director) {
+            super(director.getId(), director.getName());
+        }
+
+        @Override
+        public void setId(Integer id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
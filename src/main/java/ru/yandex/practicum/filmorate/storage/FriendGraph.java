@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.UserRepository;
+
+import java.util.*;
+
+/**
+ * Списки смежности дружбы в памяти: для каждого пользователя — сжатая битовая карта id тех, кого он
+ * добавил в друзья (дружба в {@code friendships} односторонняя). Изменения применяются после коммита,
+ * пришедшие во время перестройки проигрываются поверх загруженных данных, как в {@link LikeBitmapIndex}.
+ */
+@Component
+public class FriendGraph {
+    private static final Logger log = LoggerFactory.getLogger(FriendGraph.class);
+
+    private final UserRepository userRepository;
+    private Map<Integer, RoaringBitmap> friendsByUser = new HashMap<>();
+    private List<Runnable> replayLog;
+    private volatile boolean ready;
+
+    public FriendGraph(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            replayLog = new ArrayList<>();
+        }
+        Map<Integer, RoaringBitmap> loaded = new HashMap<>();
+        userRepository.forEachFriendship((userId, friendId) ->
+                loaded.computeIfAbsent(userId, id -> new RoaringBitmap()).add(friendId));
+        synchronized (this) {
+            friendsByUser = loaded;
+            List<Runnable> pending = replayLog;
+            replayLog = null;
+            pending.forEach(Runnable::run);
+            ready = true;
+            log.debug("Граф дружбы перестроен: {} пользователей с друзьями", friendsByUser.size());
+        }
+    }
+
+    public void friendAdded(int userId, int friendId) {
+        AfterCommit.run(() -> apply(() ->
+                friendsByUser.computeIfAbsent(userId, id -> new RoaringBitmap()).add(friendId)));
+    }
+
+    public void friendRemoved(int userId, int friendId) {
+        AfterCommit.run(() -> apply(() -> {
+            RoaringBitmap friends = friendsByUser.get(userId);
+            if (friends != null && friends.remove(friendId) && friends.isEmpty()) {
+                friendsByUser.remove(userId);
+            }
+        }));
+    }
+
+    public void userRemoved(int userId) {
+        AfterCommit.run(() -> apply(() -> {
+            friendsByUser.remove(userId);
+            friendsByUser.values().removeIf(friends -> friends.remove(userId) && friends.isEmpty());
+        }));
+    }
+
+    /**
+     * Id друзей пользователя по возрастанию.
+     */
+    public synchronized int[] friends(int userId) {
+        RoaringBitmap friends = friendsByUser.get(userId);
+        return friends == null ? new int[0] : friends.toArray();
+    }
+
+    private synchronized void apply(Runnable change) {
+        if (replayLog != null) {
+            replayLog.add(change);
+            return;
+        }
+        change.run();
+    }
+}
@@ -0,0 +1,271 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dto.FilmField;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Нечёткий поиск по словам названий фильмов. Словарь нормализованных слов хранится в BK-дереве по
+ * расстоянию Левенштейна: неравенство треугольника позволяет обходить только ветви, где может
+ * найтись слово на расстоянии не больше допустимого, а не сравнивать запрос с каждым названием.
+ * Фильм подходит, если каждому слову запроса нашлось близкое слово в его названии; чем меньше сумма
+ * расстояний, тем выше фильм. Обход ограничен по времени, результат — по числу фильмов.
+ * <p>
+ * Удалить слово из BK-дерева нельзя, поэтому слова без фильмов остаются в нём пустыми и
+ * пропускаются; когда их становится больше, чем живых, дерево строится заново.
+ */
+@Component
+public class FuzzyTitleIndex {
+    private static final Logger log = LoggerFactory.getLogger(FuzzyTitleIndex.class);
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.NAME);
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    private final FilmRepository filmRepository;
+    private final int maxDistance;
+    private final int maxCandidates;
+    private final long timeoutNanos;
+    private final Map<String, RoaringBitmap> filmsByTerm = new HashMap<>();
+    private final Map<Integer, String[]> termsByFilm = new HashMap<>();
+    private BkTree tree = new BkTree();
+    private int deadTerms;
+    private List<Runnable> replayLog;
+    private volatile boolean ready;
+
+    public FuzzyTitleIndex(FilmRepository filmRepository,
+                           @Value("${filmorate.search.fuzzy.max-distance:2}") int maxDistance,
+                           @Value("${filmorate.search.fuzzy.max-candidates:50}") int maxCandidates,
+                           @Value("${filmorate.search.fuzzy.timeout-ms:50}") long timeoutMillis) {
+        this.filmRepository = filmRepository;
+        this.maxDistance = maxDistance;
+        this.maxCandidates = maxCandidates;
+        this.timeoutNanos = timeoutMillis * 1_000_000;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            replayLog = new ArrayList<>();
+        }
+        List<Film> films = filmRepository.getAll(INDEXED_FIELDS);
+        synchronized (this) {
+            filmsByTerm.clear();
+            termsByFilm.clear();
+            tree = new BkTree();
+            deadTerms = 0;
+            films.forEach(film -> saveFilm(film.getId(), film.getName()));
+            List<Runnable> pending = replayLog;
+            replayLog = null;
+            pending.forEach(Runnable::run);
+            ready = true;
+            log.debug("Словарь нечёткого поиска перестроен: {} слов, {} фильмов", filmsByTerm.size(), termsByFilm.size());
+        }
+    }
+
+    public void filmSaved(Film film) {
+        int filmId = film.getId();
+        String name = film.getName();
+        AfterCommit.run(() -> apply(() -> saveFilm(filmId, name)));
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> apply(() -> removeFilm(filmId)));
+    }
+
+    /**
+     * Id фильмов, в названии которых для каждого слова запроса есть слово на допустимом расстоянии:
+     * 0 для слов до двух букв, 1 — до пяти, иначе {@code max-distance}. Упорядочены по сумме расстояний,
+     * затем по id; не больше {@code max-candidates}.
+     */
+    public synchronized List<Integer> search(String query) {
+        String[] words = Arrays.stream(terms(query)).distinct().toArray(String[]::new);
+        if (words.length == 0) {
+            return List.of();
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        Map<Integer, Integer> scores = null;
+        for (String word : words) {
+            Map<Integer, Integer> distances = new HashMap<>();
+            tree.search(word, allowedDistance(word), deadline, (term, distance) -> {
+                RoaringBitmap films = filmsByTerm.get(term);
+                if (films != null) {
+                    films.forEach(filmId -> distances.merge(filmId, distance, Math::min));
+                }
+            });
+            if (scores == null) {
+                scores = distances;
+            } else {
+                Map<Integer, Integer> previous = scores;
+                scores = new HashMap<>();
+                for (Map.Entry<Integer, Integer> entry : distances.entrySet()) {
+                    Integer score = previous.get(entry.getKey());
+                    if (score != null) {
+                        scores.put(entry.getKey(), score + entry.getValue());
+                    }
+                }
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .limit(maxCandidates)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private synchronized void apply(Runnable change) {
+        if (replayLog != null) {
+            replayLog.add(change);
+            return;
+        }
+        change.run();
+    }
+
+    private void saveFilm(int filmId, String name) {
+        removeFilm(filmId);
+        String[] terms = Arrays.stream(terms(name)).distinct().toArray(String[]::new);
+        termsByFilm.put(filmId, terms);
+        for (String term : terms) {
+            RoaringBitmap films = filmsByTerm.get(term);
+            if (films == null) {
+                films = new RoaringBitmap();
+                filmsByTerm.put(term, films);
+                if (!tree.add(term)) {
+                    deadTerms--;
+                }
+            }
+            films.add(filmId);
+        }
+    }
+
+    private void removeFilm(int filmId) {
+        String[] terms = termsByFilm.remove(filmId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            RoaringBitmap films = filmsByTerm.get(term);
+            if (films != null && films.remove(filmId) && films.isEmpty()) {
+                filmsByTerm.remove(term);
+                deadTerms++;
+            }
+        }
+        if (deadTerms > filmsByTerm.size()) {
+            tree = new BkTree();
+            filmsByTerm.keySet().forEach(tree::add);
+            deadTerms = 0;
+        }
+    }
+
+    private int allowedDistance(String word) {
+        if (word.length() <= 2) {
+            return 0;
+        }
+        return Math.min(word.length() <= 5 ? 1 : 2, maxDistance);
+    }
+
+    private static String[] terms(String text) {
+        String normalized = TextNormalizer.normalize(text);
+        return Arrays.stream(normalized.split("[^\\p{L}\\p{Nd}]+"))
+                .filter(term -> !term.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static int distance(String first, String second) {
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= second.length(); j++) {
+                int substitution = previous[j - 1] + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length()];
+    }
+
+    private static final class BkTree {
+        private Node root;
+
+        /**
+         * Возвращает {@code false}, если слово уже было в дереве.
+         */
+        boolean add(String term) {
+            if (root == null) {
+                root = new Node(term);
+                return true;
+            }
+            Node node = root;
+            while (true) {
+                int distance = distance(term, node.term);
+                if (distance == 0) {
+                    return false;
+                }
+                Node child = node.children.get(distance);
+                if (child == null) {
+                    node.children.put(distance, new Node(term));
+                    return true;
+                }
+                node = child;
+            }
+        }
+
+        void search(String word, int limit, long deadline, ObjIntConsumer<String> consumer) {
+            if (root == null) {
+                return;
+            }
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            int visited = 0;
+            while (!stack.isEmpty()) {
+                if (++visited % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    log.debug("Нечёткий поиск «{}» прерван по времени после {} слов", word, visited);
+                    return;
+                }
+                Node node = stack.pop();
+                int distance = distance(word, node.term);
+                if (distance <= limit) {
+                    consumer.accept(node.term, distance);
+                }
+                for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                    if (Math.abs(child.getKey() - distance) <= limit) {
+                        stack.push(child.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Node {
+        private final String term;
+        private final Map<Integer, Node> children = new HashMap<>(4);
+
+        Node(String term) {
+            this.term = term;
+        }
+    }
+}
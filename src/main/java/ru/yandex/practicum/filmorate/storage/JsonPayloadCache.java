@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.Page;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш готовых к отправке тел ответов: JSON в UTF-8 и его gzip-версия. Запись действительна, пока
+ * не изменилась версия данных, под которой она была построена. Вытеснение — LRU по числу записей.
+ */
+@Component
+public class JsonPayloadCache {
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final Map<String, Payload> entries;
+
+    public JsonPayloadCache(ObjectMapper objectMapper,
+                            @Value("${filmorate.cache.payloads.max-entries:1000}") int maxEntries) {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Payload> eldest) {
+                return size() > JsonPayloadCache.this.maxEntries;
+            }
+        };
+    }
+
+    public Payload get(String key, long version, Supplier<?> body) {
+        Payload cached = lookup(key, version);
+        if (cached != null) {
+            return cached;
+        }
+        return store(key, serialize(version, body.get(), null));
+    }
+
+    public Payload getPage(String key, long version, Supplier<? extends Page<?>> page) {
+        Payload cached = lookup(key, version);
+        if (cached != null) {
+            return cached;
+        }
+        Page<?> loaded = page.get();
+        String nextCursor = loaded.next() != null ? loaded.next().encode() : null;
+        return store(key, serialize(version, loaded.items(), nextCursor));
+    }
+
+    private synchronized Payload lookup(String key, long version) {
+        Payload payload = entries.get(key);
+        if (payload != null && payload.version() != version) {
+            entries.remove(key);
+            return null;
+        }
+        return payload;
+    }
+
+    private synchronized Payload store(String key, Payload payload) {
+        Payload current = entries.get(key);
+        if (current == null || current.version() <= payload.version()) {
+            entries.put(key, payload);
+        }
+        return payload;
+    }
+
+    private Payload serialize(long version, Object body, String nextCursor) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / 2 + 32);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+                gzip.write(json);
+            }
+            return new Payload(version, json, gzipped.toByteArray(), nextCursor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать ответ", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public record Payload(long version, byte[] json, byte[] gzip, String nextCursor) {
+    }
+}
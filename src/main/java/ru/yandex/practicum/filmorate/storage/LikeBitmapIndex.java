@@ -0,0 +1,322 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.util.*;
+
+/**
+ * Лайки в памяти: пользователи по фильму — сжатые битовые карты, фильмы по пользователю —
+ * отсортированные массивы int, которые при лайке и отмене заменяются новой копией. Даёт проверку
+ * принадлежности, число лайков и пересечения без выборки списков из {@code film_likes}. Изменения
+ * применяются после коммита; пришедшие во время перестройки накапливаются и проигрываются поверх
+ * загруженных данных — операции над множеством идемпотентны.
+ */
+@Component
+public class LikeBitmapIndex {
+    private static final Logger log = LoggerFactory.getLogger(LikeBitmapIndex.class);
+    private static final int[] EMPTY = new int[0];
+    private static final int CUTOFF_FIRST_CHECK = 32;
+
+    private final FilmRepository filmRepository;
+    private Map<Integer, RoaringBitmap> usersByFilm = new HashMap<>();
+    private Map<Integer, int[]> filmsByUser = new HashMap<>();
+    private List<Runnable> replayLog;
+    private volatile boolean ready;
+
+    public LikeBitmapIndex(FilmRepository filmRepository) {
+        this.filmRepository = filmRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            replayLog = new ArrayList<>();
+        }
+        Map<Integer, RoaringBitmap> loadedByFilm = new HashMap<>();
+        Map<Integer, RoaringBitmap> loadedByUser = new HashMap<>();
+        filmRepository.forEachLike(like -> {
+            loadedByFilm.computeIfAbsent(like.filmId(), id -> new RoaringBitmap()).add(like.userId());
+            loadedByUser.computeIfAbsent(like.userId(), id -> new RoaringBitmap()).add(like.filmId());
+        });
+        Map<Integer, int[]> arraysByUser = new HashMap<>();
+        loadedByUser.forEach((userId, films) -> arraysByUser.put(userId, films.toArray()));
+        synchronized (this) {
+            usersByFilm = loadedByFilm;
+            filmsByUser = arraysByUser;
+            List<Runnable> pending = replayLog;
+            replayLog = null;
+            pending.forEach(Runnable::run);
+            ready = true;
+            log.debug("Индекс лайков перестроен: {} фильмов, {} пользователей", usersByFilm.size(), filmsByUser.size());
+        }
+    }
+
+    public void likeAdded(FilmLike like) {
+        AfterCommit.run(() -> apply(() -> add(like)));
+    }
+
+    public void likeRemoved(FilmLike like) {
+        AfterCommit.run(() -> apply(() -> remove(like)));
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> apply(() -> {
+            RoaringBitmap users = usersByFilm.remove(filmId);
+            if (users != null) {
+                users.forEach(userId -> removeFilm(userId, filmId));
+            }
+        }));
+    }
+
+    public void userRemoved(int userId) {
+        AfterCommit.run(() -> apply(() -> {
+            int[] films = filmsByUser.remove(userId);
+            if (films != null) {
+                for (int filmId : films) {
+                    removeFrom(usersByFilm, filmId, userId);
+                }
+            }
+        }));
+    }
+
+    public synchronized boolean hasLiked(int filmId, int userId) {
+        RoaringBitmap users = usersByFilm.get(filmId);
+        return users != null && users.contains(userId);
+    }
+
+    public synchronized int likeCount(int filmId) {
+        RoaringBitmap users = usersByFilm.get(filmId);
+        return users == null ? 0 : users.cardinality();
+    }
+
+    /**
+     * Id фильмов, которые лайкнул пользователь, по возрастанию.
+     */
+    public synchronized int[] likedFilms(int userId) {
+        return filmsOf(userId).clone();
+    }
+
+    /**
+     * Фильмы, которые лайкнули оба пользователя, по убыванию общего числа лайков, затем по id. Хранимые
+     * массивы лайков пересекаются галопирующим слиянием без копирования, так что работа пропорциональна
+     * меньшему из них.
+     */
+    public synchronized int[] commonLikedFilms(int userId, int otherUserId) {
+        return rankByLikes(SortedIntSets.intersect(filmsOf(userId), filmsOf(otherUserId)));
+    }
+
+    /**
+     * Копия {@code filmIds}, упорядоченная по убыванию числа лайков, затем по id.
+     */
+    public synchronized int[] rankByLikes(int[] filmIds) {
+        long[] ranked = new long[filmIds.length];
+        for (int i = 0; i < filmIds.length; i++) {
+            ranked[i] = (long) -likeCount(filmIds[i]) << 32 | filmIds[i];
+        }
+        Arrays.sort(ranked);
+        int[] result = new int[ranked.length];
+        for (int i = 0; i < ranked.length; i++) {
+            result[i] = (int) ranked[i];
+        }
+        return result;
+    }
+
+    /**
+     * Рекомендации коллаборативной фильтрации: берётся пользователь с наибольшим числом общих лайков
+     * (при равенстве — с меньшим id), и возвращаются его фильмы, которых нет у {@code userId}.
+     */
+    public synchronized int[] recommend(int userId) {
+        int[] own = filmsOf(userId);
+        Map<Integer, Integer> overlaps = new HashMap<>();
+        for (int filmId : own) {
+            usersByFilm.get(filmId).forEach(otherId -> overlaps.merge(otherId, 1, Integer::sum));
+        }
+        overlaps.remove(userId);
+        int bestUser = -1;
+        int bestOverlap = 0;
+        for (Map.Entry<Integer, Integer> entry : overlaps.entrySet()) {
+            if (entry.getValue() > bestOverlap || entry.getValue() == bestOverlap && entry.getKey() < bestUser) {
+                bestUser = entry.getKey();
+                bestOverlap = entry.getValue();
+            }
+        }
+        if (bestUser < 0) {
+            bestUser = filmsByUser.keySet().stream()
+                    .filter(otherId -> otherId != userId)
+                    .min(Integer::compare)
+                    .orElse(-1);
+        }
+        if (bestUser < 0) {
+            return new int[0];
+        }
+        return SortedIntSets.difference(filmsByUser.get(bestUser), own);
+    }
+
+    /**
+     * Фильмы, чаще всего лайкнутые пользователями {@code userIds}: по числу таких лайков, затем по общему
+     * числу лайков и по id. Пользователи обходятся от самых активных, пользователи без лайков пропускаются.
+     * Обход прекращается, как только даже все оставшиеся вместе не могут вывести в первые {@code count}
+     * новый фильм; их лайки для уже отобранных фильмов досчитываются пересечением битовых карт, так что
+     * результат тот же, что при полном обходе. Отбор ведётся в куче размера {@code count}, так что
+     * сортируется не весь набор кандидатов.
+     */
+    public synchronized int[] topLikedBy(int[] userIds, int count) {
+        int[] users = Arrays.stream(userIds)
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer userId) -> filmsOf(userId).length).reversed())
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int active = 0;
+        while (active < users.length && filmsOf(users[active]).length > 0) {
+            active++;
+        }
+        Map<Integer, int[]> counts = new HashMap<>();
+        int processed = 0;
+        int nextCheck = CUTOFF_FIRST_CHECK;
+        for (; processed < active; processed++) {
+            if (processed == nextCheck) {
+                nextCheck *= 2;
+                Map<Integer, int[]> settled = settledTop(counts, count, active - processed);
+                if (settled != null) {
+                    RoaringBitmap remaining = new RoaringBitmap();
+                    for (int i = processed; i < active; i++) {
+                        remaining.add(users[i]);
+                    }
+                    settled.forEach((filmId, friendLikes) ->
+                            friendLikes[0] += usersByFilm.get(filmId).andCardinality(remaining));
+                    counts = settled;
+                    break;
+                }
+            }
+            for (int filmId : filmsOf(users[processed])) {
+                counts.computeIfAbsent(filmId, id -> new int[1])[0]++;
+            }
+        }
+        Comparator<int[]> order = Comparator.<int[]>comparingInt(candidate -> candidate[1])
+                .thenComparingInt(candidate -> candidate[2])
+                .thenComparingInt(candidate -> -candidate[0]);
+        PriorityQueue<int[]> heap = new PriorityQueue<>(count + 1, order);
+        counts.forEach((filmId, friendLikes) -> {
+            int[] candidate = {filmId, friendLikes[0], likeCount(filmId)};
+            if (heap.size() < count) {
+                heap.add(candidate);
+            } else if (order.compare(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        });
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll()[0];
+        }
+        return top;
+    }
+
+    /**
+     * Лучшие {@code count} фильмов по релевантности: качество совпадения из {@code matchScores} плюс
+     * {@code popularityWeight · ln(1 + лайки)}, при равенстве — по лайкам и id. Как и в
+     * {@link #topLikedBy}, отбор идёт в куче размера {@code count}.
+     */
+    public synchronized int[] topByRelevance(Map<Integer, Integer> matchScores, double popularityWeight, int count) {
+        Comparator<Scored> order = Comparator.comparingDouble(Scored::score)
+                .thenComparingInt(Scored::likes)
+                .thenComparing(Scored::filmId, Comparator.reverseOrder());
+        PriorityQueue<Scored> heap = new PriorityQueue<>(count + 1, order);
+        matchScores.forEach((filmId, match) -> {
+            int likes = likeCount(filmId);
+            Scored candidate = new Scored(filmId, match + popularityWeight * Math.log1p(likes), likes);
+            if (heap.size() < count) {
+                heap.add(candidate);
+            } else if (order.compare(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        });
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll().filmId();
+        }
+        return top;
+    }
+
+    /**
+     * Первые {@code count} фильмов по уже набранному счёту, если их состав окончательный: лучший из
+     * остальных даже с лайками всех {@code remaining} оставшихся пользователей остаётся ниже
+     * {@code count}-го. Иначе {@code null}.
+     */
+    private static Map<Integer, int[]> settledTop(Map<Integer, int[]> counts, int count, int remaining) {
+        if (counts.size() <= count) {
+            return null;
+        }
+        PriorityQueue<Map.Entry<Integer, int[]>> heap = new PriorityQueue<>(count + 2,
+                Comparator.comparingInt(entry -> entry.getValue()[0]));
+        for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+            heap.add(entry);
+            if (heap.size() > count + 1) {
+                heap.poll();
+            }
+        }
+        int bestOutside = heap.poll().getValue()[0];
+        if (bestOutside + remaining >= heap.peek().getValue()[0]) {
+            return null;
+        }
+        Map<Integer, int[]> settled = new HashMap<>();
+        heap.forEach(entry -> settled.put(entry.getKey(), entry.getValue()));
+        return settled;
+    }
+
+    private synchronized void apply(Runnable change) {
+        if (replayLog != null) {
+            replayLog.add(change);
+            return;
+        }
+        change.run();
+    }
+
+    private void add(FilmLike like) {
+        usersByFilm.computeIfAbsent(like.filmId(), id -> new RoaringBitmap()).add(like.userId());
+        filmsByUser.put(like.userId(), SortedIntSets.with(filmsOf(like.userId()), like.filmId()));
+    }
+
+    private void remove(FilmLike like) {
+        removeFrom(usersByFilm, like.filmId(), like.userId());
+        removeFilm(like.userId(), like.filmId());
+    }
+
+    private int[] filmsOf(int userId) {
+        return filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    private void removeFilm(int userId, int filmId) {
+        int[] films = SortedIntSets.without(filmsOf(userId), filmId);
+        if (films.length == 0) {
+            filmsByUser.remove(userId);
+        } else {
+            filmsByUser.put(userId, films);
+        }
+    }
+
+    private static void removeFrom(Map<Integer, RoaringBitmap> bitmaps, int key, int value) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null && bitmap.remove(value) && bitmap.isEmpty()) {
+            bitmaps.remove(key);
+        }
+    }
+
+    private record Scored(int filmId, double score, int likes) {
+    }
+}
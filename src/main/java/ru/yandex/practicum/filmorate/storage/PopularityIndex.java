@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.Cursor;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dal.Page;
+import ru.yandex.practicum.filmorate.dto.FilmField;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+
+/**
+ * Рейтинг популярности фильмов в памяти. Для каждой корзины (все фильмы, год, жанр, жанр и год)
+ * хранится упорядоченное по числу лайков множество, поэтому лайк обновляет индекс за O(log n), а топ
+ * читается без обращения к {@code film_likes}. Порядок совпадает с keyset-сортировкой
+ * {@code likes DESC, film_id}, так что курсоры SQL-пути и индекса взаимозаменяемы.
+ */
+@Component
+public class PopularityIndex {
+    private static final Logger log = LoggerFactory.getLogger(PopularityIndex.class);
+    private static final Comparator<Ranked> ORDER = Comparator.comparingLong(Ranked::likes).reversed()
+            .thenComparingInt(Ranked::filmId);
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.GENRES);
+
+    private final FilmRepository filmRepository;
+    private final Map<Integer, FilmStats> films = new HashMap<>();
+    private final Map<Bucket, TreeSet<Ranked>> buckets = new HashMap<>();
+    private final Set<Integer> touchedDuringRebuild = new HashSet<>();
+    private boolean rebuilding;
+    private volatile boolean ready;
+
+    public PopularityIndex(FilmRepository filmRepository) {
+        this.filmRepository = filmRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Перечитывает индекс из базы. Изменения, пришедшие во время перестройки, не применяются как
+     * приращения: такие фильмы запоминаются и затем перечитываются поштучно.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            rebuilding = true;
+            touchedDuringRebuild.clear();
+        }
+        List<Film> all = filmRepository.getAll(INDEXED_FIELDS);
+        Map<Integer, Long> likes = filmRepository.getLikeCounts();
+        synchronized (this) {
+            films.clear();
+            buckets.clear();
+            for (Film film : all) {
+                index(toStats(film, likes.getOrDefault(film.getId(), 0L)));
+            }
+        }
+        while (true) {
+            Set<Integer> pending;
+            synchronized (this) {
+                if (touchedDuringRebuild.isEmpty()) {
+                    rebuilding = false;
+                    ready = true;
+                    log.debug("Индекс популярности перестроен: {} фильмов, {} корзин", films.size(), buckets.size());
+                    return;
+                }
+                pending = new HashSet<>(touchedDuringRebuild);
+                touchedDuringRebuild.clear();
+            }
+            for (int filmId : pending) {
+                Optional<Film> film = filmRepository.getById(filmId);
+                long filmLikes = film.isPresent() ? filmRepository.getLikeCount(filmId) : 0;
+                synchronized (this) {
+                    unindex(filmId);
+                    film.ifPresent(found -> index(toStats(found, filmLikes)));
+                }
+            }
+        }
+    }
+
+    public void likeAdded(int filmId) {
+        AfterCommit.run(() -> adjust(filmId, 1));
+    }
+
+    public void likeRemoved(int filmId) {
+        AfterCommit.run(() -> adjust(filmId, -1));
+    }
+
+    public void likesRemoved(Collection<Integer> filmIds) {
+        List<Integer> ids = List.copyOf(filmIds);
+        AfterCommit.run(() -> ids.forEach(filmId -> adjust(filmId, -1)));
+    }
+
+    /**
+     * Регистрирует новый фильм или изменённые год и жанры существующего; число лайков сохраняется.
+     */
+    public void filmSaved(Film film) {
+        FilmStats stats = toStats(film, 0);
+        AfterCommit.run(() -> save(stats));
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> remove(filmId));
+    }
+
+    /**
+     * Страница топа по корзине. {@code genreId} и {@code year} могут быть {@code null} — тогда фильтр не
+     * применяется. Возвращает id фильмов в порядке убывания лайков.
+     */
+    public synchronized Page<Integer> top(Integer genreId, Integer year, Cursor after, int limit) {
+        TreeSet<Ranked> bucket = buckets.get(new Bucket(genreId, year));
+        if (bucket == null) {
+            return new Page<>(List.of(), null);
+        }
+        NavigableSet<Ranked> tail = after == null ? bucket : bucket.tailSet(new Ranked(after.id(), after.sortKey()), false);
+        List<Integer> ids = new ArrayList<>(Math.min(limit, tail.size()));
+        Ranked last = null;
+        for (Ranked ranked : tail) {
+            if (ids.size() == limit) {
+                return new Page<>(ids, new Cursor(last.likes(), last.filmId()));
+            }
+            ids.add(ranked.filmId());
+            last = ranked;
+        }
+        return new Page<>(ids, null);
+    }
+
+    private synchronized void adjust(int filmId, long delta) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(filmId);
+            return;
+        }
+        FilmStats stats = films.get(filmId);
+        if (stats == null) {
+            return;
+        }
+        unindex(filmId);
+        index(stats.withLikes(Math.max(0, stats.likes() + delta)));
+    }
+
+    private synchronized void save(FilmStats stats) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(stats.filmId());
+            return;
+        }
+        FilmStats previous = unindex(stats.filmId());
+        index(previous == null ? stats : stats.withLikes(previous.likes()));
+    }
+
+    private synchronized void remove(int filmId) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(filmId);
+            return;
+        }
+        unindex(filmId);
+    }
+
+    private void index(FilmStats stats) {
+        films.put(stats.filmId(), stats);
+        Ranked ranked = new Ranked(stats.filmId(), stats.likes());
+        for (Bucket bucket : bucketsOf(stats)) {
+            buckets.computeIfAbsent(bucket, key -> new TreeSet<>(ORDER)).add(ranked);
+        }
+    }
+
+    private FilmStats unindex(int filmId) {
+        FilmStats stats = films.remove(filmId);
+        if (stats == null) {
+            return null;
+        }
+        Ranked ranked = new Ranked(stats.filmId(), stats.likes());
+        for (Bucket bucket : bucketsOf(stats)) {
+            TreeSet<Ranked> set = buckets.get(bucket);
+            if (set != null) {
+                set.remove(ranked);
+                if (set.isEmpty()) {
+                    buckets.remove(bucket);
+                }
+            }
+        }
+        return stats;
+    }
+
+    private static List<Bucket> bucketsOf(FilmStats stats) {
+        List<Bucket> result = new ArrayList<>(2 + 2 * stats.genreIds().length);
+        result.add(new Bucket(null, null));
+        result.add(new Bucket(null, stats.year()));
+        for (int genreId : stats.genreIds()) {
+            result.add(new Bucket(genreId, null));
+            result.add(new Bucket(genreId, stats.year()));
+        }
+        return result;
+    }
+
+    private static FilmStats toStats(Film film, long likes) {
+        int[] genreIds = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .toArray();
+        return new FilmStats(film.getId(), film.getReleaseDate().getYear(), genreIds, likes);
+    }
+
+    private record Bucket(Integer genreId, Integer year) {
+    }
+
+    private record Ranked(int filmId, long likes) {
+    }
+
+    private record FilmStats(int filmId, int year, int[] genreIds, long likes) {
+        FilmStats withLikes(long newLikes) {
+            return new FilmStats(filmId, year, genreIds, newLikes);
+        }
+    }
+}
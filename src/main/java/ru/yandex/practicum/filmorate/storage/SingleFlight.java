@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Склеивание одинаковых дорогих чтений: из одновременных вызовов с одним ключом и версией данных
+ * загрузку выполняет только первый, остальные ждут его результат (или его исключение). Версия входит
+ * в ключ полёта, поэтому запрос, пришедший после записи, не получит результат, начатый до неё.
+ * <p>
+ * При {@code stale-ttl-ms > 0} последний результат по ключу хранится это время: пока версия не
+ * изменилась, он отдаётся как есть, а после изменения — отдаётся устаревшим, пока один фоновый поток
+ * перечитывает данные. Так истечение кэша не превращается в лавину одинаковых запросов к базе.
+ * Результат общий для всех вызывающих, изменять его нельзя.
+ */
+@Component
+public class SingleFlight {
+    private final long staleTtlMillis;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Map<String, Result> recent;
+    private final ExecutorService refresher;
+
+    public SingleFlight(@Value("${filmorate.singleflight.stale-ttl-ms:0}") long staleTtlMillis,
+                        @Value("${filmorate.singleflight.max-entries:1000}") int maxEntries) {
+        this.staleTtlMillis = staleTtlMillis;
+        this.maxEntries = maxEntries;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > SingleFlight.this.maxEntries;
+            }
+        };
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "single-flight-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, long version, Supplier<T> loader) {
+        if (staleTtlMillis > 0) {
+            Result result = recent(key);
+            if (result != null) {
+                String flightKey = flightKey(key, version);
+                if (result.version() != version && refreshing.add(flightKey)) {
+                    refresher.execute(() -> {
+                        try {
+                            load(key, version, loader);
+                        } catch (RuntimeException ignored) {
+                            // ошибку получит следующий синхронный запрос
+                        } finally {
+                            refreshing.remove(flightKey);
+                        }
+                    });
+                }
+                return (T) result.value();
+            }
+        }
+        return load(key, version, loader);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(String key, long version, Supplier<T> loader) {
+        String flightKey = flightKey(key, version);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+        try {
+            T value = loader.get();
+            remember(key, new Result(version, value, System.currentTimeMillis()));
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание результата запроса прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Не удалось выполнить запрос", e.getCause());
+        }
+    }
+
+    private synchronized Result recent(String key) {
+        Result result = recent.get(key);
+        if (result != null && System.currentTimeMillis() - result.loadedAt() >= staleTtlMillis) {
+            recent.remove(key);
+            return null;
+        }
+        return result;
+    }
+
+    private synchronized void remember(String key, Result result) {
+        if (staleTtlMillis <= 0) {
+            return;
+        }
+        Result current = recent.get(key);
+        if (current == null || current.version() <= result.version()) {
+            recent.put(key, result);
+        }
+    }
+
+    private static String flightKey(String key, long version) {
+        return key + '@' + version;
+    }
+
+    private record Result(long version, Object value, long loadedAt) {
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+/**
+ * Операции над множествами, заданными отсортированными по возрастанию массивами int без повторов.
+ */
+public final class SortedIntSets {
+    private SortedIntSets() {
+    }
+
+    /**
+     * Пересечение галопирующим слиянием: по большему массиву идём экспоненциальными шагами от текущей
+     * позиции и добиваем двоичным поиском, поэтому стоимость — O(m·log(n/m)), где m — длина меньшего
+     * массива. При близких длинах это обычное слияние.
+     */
+    public static int[] intersect(int[] first, int[] second) {
+        int[] small = first.length <= second.length ? first : second;
+        int[] large = small == first ? second : first;
+        int[] result = new int[small.length];
+        int count = 0;
+        int from = 0;
+        for (int i = 0; i < small.length && from < large.length; i++) {
+            int value = small[i];
+            int step = 1;
+            int to = from;
+            while (to < large.length && large[to] < value) {
+                from = to + 1;
+                to += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(large, from, Math.min(to + 1, large.length), value);
+            if (found >= 0) {
+                result[count++] = value;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Новый массив с добавленным {@code value} или тот же массив, если значение уже есть.
+     */
+    public static int[] with(int[] set, int value) {
+        int position = Arrays.binarySearch(set, value);
+        if (position >= 0) {
+            return set;
+        }
+        int insertion = -position - 1;
+        int[] result = new int[set.length + 1];
+        System.arraycopy(set, 0, result, 0, insertion);
+        result[insertion] = value;
+        System.arraycopy(set, insertion, result, insertion + 1, set.length - insertion);
+        return result;
+    }
+
+    /**
+     * Новый массив без {@code value} или тот же массив, если значения в нём нет.
+     */
+    public static int[] without(int[] set, int value) {
+        int position = Arrays.binarySearch(set, value);
+        if (position < 0) {
+            return set;
+        }
+        int[] result = new int[set.length - 1];
+        System.arraycopy(set, 0, result, 0, position);
+        System.arraycopy(set, position + 1, result, position, set.length - position - 1);
+        return result;
+    }
+
+    /**
+     * Элементы {@code first}, которых нет в {@code second}.
+     */
+    public static int[] difference(int[] first, int[] second) {
+        int[] result = new int[first.length];
+        int count = 0;
+        int j = 0;
+        for (int value : first) {
+            while (j < second.length && second[j] < value) {
+                j++;
+            }
+            if (j == second.length || second[j] != value) {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
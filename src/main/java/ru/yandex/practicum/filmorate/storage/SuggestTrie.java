@@ -0,0 +1,493 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.DirectorRepository;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dto.FilmField;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+
+/**
+ * Автодополнение по названиям фильмов и именам режиссёров. Нормализованный текст, а также каждый его
+ * хвост, начинающийся с нового слова, хранятся в сжатом префиксном дереве (radix trie): цепочки узлов
+ * с одним потомком склеены в одно ребро. В каждом узле лежат {@code top-k} лучших завершений его
+ * поддерева по числу лайков (у режиссёра — сумма лайков его фильмов), поэтому ответ — спуск по префиксу
+ * и чтение готового списка. После любого изменения списки пересчитываются снизу вверх по затронутым
+ * путям из списков детей. Во время перестройки изменения не применяются, а затронутые фильмы и
+ * режиссёры затем перечитываются поштучно, как в {@link PopularityIndex}.
+ */
+@Component
+public class SuggestTrie {
+    private static final Logger log = LoggerFactory.getLogger(SuggestTrie.class);
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.NAME, FilmField.DIRECTORS);
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong((Entry entry) -> entry.likes).reversed()
+            .thenComparing(entry -> entry.kind)
+            .thenComparingInt(entry -> entry.id);
+
+    public enum Kind {
+        FILM, DIRECTOR
+    }
+
+    private final FilmRepository filmRepository;
+    private final DirectorRepository directorRepository;
+    private final int topK;
+    private final Map<Integer, Entry> films = new HashMap<>();
+    private final Map<Integer, Entry> directors = new HashMap<>();
+    private final Map<Integer, int[]> directorsByFilm = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private final Set<Integer> touchedFilms = new HashSet<>();
+    private final Set<Integer> touchedDirectors = new HashSet<>();
+    private Node root = new Node("", null);
+    private boolean rebuilding;
+    private volatile boolean ready;
+
+    public SuggestTrie(FilmRepository filmRepository, DirectorRepository directorRepository,
+                       @Value("${filmorate.suggest.top-k:10}") int topK) {
+        this.filmRepository = filmRepository;
+        this.directorRepository = directorRepository;
+        this.topK = topK;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            rebuilding = true;
+            touchedFilms.clear();
+            touchedDirectors.clear();
+        }
+        List<Director> allDirectors = directorRepository.findAll();
+        List<Film> allFilms = filmRepository.getAll(INDEXED_FIELDS);
+        Map<Integer, Long> likes = filmRepository.getLikeCounts();
+        synchronized (this) {
+            root = new Node("", null);
+            films.clear();
+            directors.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            allDirectors.forEach(director -> putDirector(director.getId(), director.getName()));
+            allFilms.forEach(film -> putFilm(film.getId(), film.getName(), directorIds(film),
+                    likes.getOrDefault(film.getId(), 0L)));
+        }
+        while (true) {
+            Set<Integer> pendingFilms;
+            Set<Integer> pendingDirectors;
+            synchronized (this) {
+                if (touchedFilms.isEmpty() && touchedDirectors.isEmpty()) {
+                    rebuilding = false;
+                    ready = true;
+                    log.debug("Дерево подсказок перестроено: {} фильмов, {} режиссёров", films.size(), directors.size());
+                    return;
+                }
+                pendingFilms = new HashSet<>(touchedFilms);
+                pendingDirectors = new HashSet<>(touchedDirectors);
+                touchedFilms.clear();
+                touchedDirectors.clear();
+            }
+            for (int directorId : pendingDirectors) {
+                Optional<Director> director = directorRepository.findById(directorId);
+                synchronized (this) {
+                    if (director.isPresent()) {
+                        putDirector(directorId, director.get().getName());
+                    } else {
+                        removeDirector(directorId);
+                    }
+                }
+            }
+            for (int filmId : pendingFilms) {
+                Optional<Film> film = filmRepository.getById(filmId);
+                long filmLikes = film.isPresent() ? filmRepository.getLikeCount(filmId) : 0;
+                synchronized (this) {
+                    if (film.isPresent()) {
+                        putFilm(filmId, film.get().getName(), directorIds(film.get()), filmLikes);
+                    } else {
+                        removeFilm(filmId);
+                    }
+                }
+            }
+        }
+    }
+
+    public void likeAdded(int filmId) {
+        AfterCommit.run(() -> adjustLikes(filmId, 1));
+    }
+
+    public void likeRemoved(int filmId) {
+        AfterCommit.run(() -> adjustLikes(filmId, -1));
+    }
+
+    public void likesRemoved(Collection<Integer> filmIds) {
+        List<Integer> ids = List.copyOf(filmIds);
+        AfterCommit.run(() -> ids.forEach(filmId -> adjustLikes(filmId, -1)));
+    }
+
+    public void filmSaved(Film film) {
+        int filmId = film.getId();
+        String name = film.getName();
+        int[] directorIds = directorIds(film);
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                if (rebuilding) {
+                    touchedFilms.add(filmId);
+                    return;
+                }
+                putFilm(filmId, name, directorIds, null);
+            }
+        });
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                if (rebuilding) {
+                    touchedFilms.add(filmId);
+                    return;
+                }
+                removeFilm(filmId);
+            }
+        });
+    }
+
+    public void directorSaved(Director director) {
+        int directorId = director.getId();
+        String name = director.getName();
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                if (rebuilding) {
+                    touchedDirectors.add(directorId);
+                    return;
+                }
+                putDirector(directorId, name);
+            }
+        });
+    }
+
+    public void directorRemoved(int directorId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                if (rebuilding) {
+                    touchedDirectors.add(directorId);
+                    return;
+                }
+                removeDirector(directorId);
+            }
+        });
+    }
+
+    /**
+     * Не больше {@code limit} (и не больше {@code top-k}) лучших названий и имён, у которых с
+     * {@code prefix} начинается весь текст или одно из слов.
+     */
+    public synchronized List<Suggestion> suggest(String prefix, int limit) {
+        Node node = find(TextNormalizer.normalize(prefix));
+        if (node == null) {
+            return List.of();
+        }
+        List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, node.top.length));
+        for (int i = 0; i < node.top.length && i < limit; i++) {
+            Entry entry = node.top[i];
+            suggestions.add(new Suggestion(entry.kind, entry.id, entry.name, entry.likes));
+        }
+        return suggestions;
+    }
+
+    private synchronized void adjustLikes(int filmId, long delta) {
+        if (rebuilding) {
+            touchedFilms.add(filmId);
+            return;
+        }
+        Entry film = films.get(filmId);
+        if (film == null) {
+            return;
+        }
+        setLikes(film, Math.max(0, film.likes + delta));
+        for (int directorId : directorsByFilm.getOrDefault(filmId, new int[0])) {
+            recountDirector(directorId);
+        }
+    }
+
+    private void putFilm(int filmId, String name, int[] directorIds, Long likes) {
+        Entry previous = films.get(filmId);
+        long filmLikes = likes != null ? likes : previous != null ? previous.likes : 0;
+        Set<Integer> affected = new HashSet<>();
+        if (previous != null) {
+            unlinkFilm(filmId, affected);
+            unindex(previous);
+        }
+        Entry entry = new Entry(Kind.FILM, filmId, name, filmLikes);
+        films.put(filmId, entry);
+        index(entry);
+        directorsByFilm.put(filmId, directorIds);
+        for (int directorId : directorIds) {
+            filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+            affected.add(directorId);
+        }
+        affected.forEach(this::recountDirector);
+    }
+
+    private void removeFilm(int filmId) {
+        Entry entry = films.remove(filmId);
+        if (entry == null) {
+            return;
+        }
+        Set<Integer> affected = new HashSet<>();
+        unlinkFilm(filmId, affected);
+        unindex(entry);
+        affected.forEach(this::recountDirector);
+    }
+
+    private void unlinkFilm(int filmId, Set<Integer> affected) {
+        for (int directorId : directorsByFilm.getOrDefault(filmId, new int[0])) {
+            Set<Integer> directed = filmsByDirector.get(directorId);
+            if (directed != null && directed.remove(filmId) && directed.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+            affected.add(directorId);
+        }
+        directorsByFilm.remove(filmId);
+    }
+
+    private void putDirector(int directorId, String name) {
+        Entry previous = directors.remove(directorId);
+        if (previous != null) {
+            unindex(previous);
+        }
+        Entry entry = new Entry(Kind.DIRECTOR, directorId, name, directorLikes(directorId));
+        directors.put(directorId, entry);
+        index(entry);
+    }
+
+    private void removeDirector(int directorId) {
+        Entry entry = directors.remove(directorId);
+        if (entry != null) {
+            unindex(entry);
+        }
+        Set<Integer> directed = filmsByDirector.remove(directorId);
+        if (directed != null) {
+            for (int filmId : directed) {
+                directorsByFilm.computeIfPresent(filmId, (id, directorIds) ->
+                        Arrays.stream(directorIds).filter(other -> other != directorId).toArray());
+            }
+        }
+    }
+
+    private void recountDirector(int directorId) {
+        Entry director = directors.get(directorId);
+        if (director != null) {
+            setLikes(director, directorLikes(directorId));
+        }
+    }
+
+    private long directorLikes(int directorId) {
+        long likes = 0;
+        for (int filmId : filmsByDirector.getOrDefault(directorId, Set.of())) {
+            Entry film = films.get(filmId);
+            if (film != null) {
+                likes += film.likes;
+            }
+        }
+        return likes;
+    }
+
+    private void setLikes(Entry entry, long likes) {
+        if (entry.likes == likes) {
+            return;
+        }
+        entry.likes = likes;
+        for (String key : entry.keys) {
+            refresh(find(key));
+        }
+    }
+
+    private void index(Entry entry) {
+        for (String key : entry.keys) {
+            Node node = insert(key);
+            if (node.terminals == null) {
+                node.terminals = new ArrayList<>(1);
+            }
+            node.terminals.add(entry);
+            refresh(node);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String key : entry.keys) {
+            Node node = find(key);
+            if (node == null || node.terminals == null) {
+                continue;
+            }
+            node.terminals.remove(entry);
+            if (node.terminals.isEmpty()) {
+                node.terminals = null;
+            }
+            refresh(compact(node));
+        }
+    }
+
+    private Node insert(String key) {
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            char first = key.charAt(position);
+            Node child = node.children.get(first);
+            if (child == null) {
+                child = new Node(key.substring(position), node);
+                node.children.put(first, child);
+                return child;
+            }
+            int common = 0;
+            while (common < child.label.length() && position + common < key.length()
+                   && child.label.charAt(common) == key.charAt(position + common)) {
+                common++;
+            }
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common), node);
+                node.children.put(first, middle);
+                child.label = child.label.substring(common);
+                child.parent = middle;
+                middle.children.put(child.label.charAt(0), child);
+                middle.top = child.top;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+        return node;
+    }
+
+    /**
+     * Узел, поддерево которого содержит все ключи с префиксом {@code prefix}; префикс может
+     * заканчиваться посередине ребра.
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            Node child = node.children.get(prefix.charAt(position));
+            if (child == null) {
+                return null;
+            }
+            int length = Math.min(child.label.length(), prefix.length() - position);
+            if (!child.label.regionMatches(0, prefix, position, length)) {
+                return null;
+            }
+            node = child;
+            position += length;
+        }
+        return node;
+    }
+
+    /**
+     * Удаляет опустевшие листья и склеивает узел без завершений с единственным потомком. Возвращает
+     * узел, с которого нужно пересчитать списки.
+     */
+    private Node compact(Node node) {
+        while (node != root && node.terminals == null) {
+            Node parent = node.parent;
+            if (node.children.isEmpty()) {
+                parent.children.remove(node.label.charAt(0));
+                node = parent;
+                continue;
+            }
+            if (node.children.size() == 1) {
+                Node child = node.children.values().iterator().next();
+                child.label = node.label + child.label;
+                child.parent = parent;
+                parent.children.put(child.label.charAt(0), child);
+                return parent;
+            }
+            break;
+        }
+        return node;
+    }
+
+    private void refresh(Node node) {
+        for (; node != null; node = node.parent) {
+            Set<Entry> candidates = new HashSet<>();
+            if (node.terminals != null) {
+                candidates.addAll(node.terminals);
+            }
+            for (Node child : node.children.values()) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            node.top = candidates.stream()
+                    .sorted(ORDER)
+                    .limit(topK)
+                    .toArray(Entry[]::new);
+        }
+    }
+
+    private static int[] directorIds(Film film) {
+        return film.getDirectors() == null ? new int[0] : film.getDirectors().stream()
+                .mapToInt(Director::getId)
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * Нормализованный текст и его хвосты, начинающиеся с очередного слова.
+     */
+    private static String[] keys(String name) {
+        String text = TextNormalizer.normalize(name).strip();
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordStart = i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1));
+            if (wordStart && Character.isLetterOrDigit(text.charAt(i))) {
+                keys.add(text.substring(i));
+            }
+        }
+        return keys.toArray(String[]::new);
+    }
+
+    public record Suggestion(Kind kind, int id, String name, long likes) {
+    }
+
+    private static final class Entry {
+        private final Kind kind;
+        private final int id;
+        private final String name;
+        private final String[] keys;
+        private long likes;
+
+        Entry(Kind kind, int id, String name, long likes) {
+            this.kind = kind;
+            this.id = id;
+            this.name = name;
+            this.keys = keys(name);
+            this.likes = likes;
+        }
+    }
+
+    private static final class Node {
+        private static final Entry[] EMPTY = new Entry[0];
+
+        private String label;
+        private Node parent;
+        private final Map<Character, Node> children = new HashMap<>(2);
+        private List<Entry> terminals;
+        private Entry[] top = EMPTY;
+
+        Node(String label, Node parent) {
+            this.label = label;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Locale;
+
+/**
+ * Приведение текста к виду, в котором его сравнивает поиск: нижний регистр и «ё» как «е». Символы
+ * заменяются по одному, поэтому подстрока исходного текста остаётся подстрокой нормализованного.
+ */
+public final class TextNormalizer {
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+}
@@ -0,0 +1,288 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Трендовые фильмы по недавним лайкам. Лайки раскладываются по часовым корзинам кольцевого буфера,
+ * а для каждого поддерживаемого окна поддерживается сумма весов лайков фильма и упорядоченное по ней
+ * множество. Вес лайка экспоненциально затухает с периодом полураспада {@code half-life}; чтобы не
+ * пересчитывать все веса со временем, хранится нормированный вес {@code 2^((t - base) / halfLife)},
+ * порядок по которому от текущего момента не зависит. Корзина, выходящая из окна, вычитается целиком;
+ * вместе с весом считается число лайков, так что фильм уходит из окна ровно с последним своим лайком.
+ * Отмены лайков не учитываются — тренд отражает приток лайков.
+ */
+@Component
+public class TrendingEngine {
+    private static final Logger log = LoggerFactory.getLogger(TrendingEngine.class);
+    private static final long BUCKET_MILLIS = 3_600_000L;
+    private static final double REBASE_EXPONENT = 16;
+    private static final Comparator<Scored> ORDER = Comparator.comparingDouble(Scored::score).reversed()
+            .thenComparingInt(Scored::filmId);
+
+    private final FilmRepository filmRepository;
+    private final Clock clock;
+    private final double halfLifeMillis;
+    private final Window[] windows;
+    private final int ringSize;
+    private final List<Map<Integer, Tally>> ring;
+    private final long[] ringHours;
+    private long currentHour;
+    private long baseMillis;
+
+    @Autowired
+    public TrendingEngine(FilmRepository filmRepository,
+                          @Value("${filmorate.trending.windows:1h,24h,7d}") String[] windows,
+                          @Value("${filmorate.trending.half-life-hours:6}") double halfLifeHours) {
+        this(filmRepository, windows, halfLifeHours, Clock.systemUTC());
+    }
+
+    TrendingEngine(FilmRepository filmRepository, String[] windows, double halfLifeHours, Clock clock) {
+        this.filmRepository = filmRepository;
+        this.clock = clock;
+        this.halfLifeMillis = halfLifeHours * BUCKET_MILLIS;
+        this.windows = Arrays.stream(windows)
+                .map(window -> new Window(window.trim(), parseHours(window.trim())))
+                .sorted(Comparator.comparingInt(Window::hours))
+                .toArray(Window[]::new);
+        this.ringSize = this.windows[this.windows.length - 1].hours();
+        this.ring = new ArrayList<>(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            ring.add(new HashMap<>());
+        }
+        this.ringHours = new long[ringSize];
+        reset(clock.millis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long now = clock.millis();
+        reset(now);
+        Instant since = Instant.ofEpochMilli((currentHour - ringSize + 1) * BUCKET_MILLIS);
+        int[] loaded = {0};
+        filmRepository.forEachLikeSince(since, (filmId, likedAt) -> {
+            record(filmId, likedAt.toEpochMilli());
+            loaded[0]++;
+        });
+        log.debug("Тренды перестроены: {} лайков за {} ч", loaded[0], ringSize);
+    }
+
+    public void likeAdded(int filmId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                long now = clock.millis();
+                advance(now);
+                record(filmId, now);
+            }
+        });
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                ring.forEach(bucket -> bucket.remove(filmId));
+                for (Window window : windows) {
+                    window.remove(filmId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Id самых трендовых фильмов в окне вида {@code 24h} или {@code 7d}; окно должно быть одним из
+     * настроенных в {@code filmorate.trending.windows}.
+     */
+    public synchronized List<Integer> top(String window, int count) {
+        advance(clock.millis());
+        int hours = parseHours(window);
+        for (Window candidate : windows) {
+            if (candidate.hours() == hours) {
+                return candidate.top(count);
+            }
+        }
+        throw new ValidationException("Окно " + window + " не поддерживается, доступны: " +
+                                      Arrays.stream(windows).map(Window::name).toList());
+    }
+
+    private void record(int filmId, long atMillis) {
+        long hour = atMillis / BUCKET_MILLIS;
+        if (hour <= currentHour - ringSize || hour > currentHour) {
+            return;
+        }
+        double weight = Math.pow(2, (atMillis - baseMillis) / halfLifeMillis);
+        ring.get(slot(hour)).computeIfAbsent(filmId, id -> new Tally()).add(weight, 1);
+        for (Window window : windows) {
+            if (hour > currentHour - window.hours()) {
+                window.add(filmId, weight, 1);
+            }
+        }
+    }
+
+    /**
+     * Сдвигает кольцо до текущего часа: корзины, выходящие из окон, вычитаются из их сумм, а самая
+     * старая корзина очищается под новый час.
+     */
+    private void advance(long now) {
+        long hour = now / BUCKET_MILLIS;
+        if (hour - currentHour >= ringSize) {
+            reset(now);
+            return;
+        }
+        while (currentHour < hour) {
+            currentHour++;
+            for (Window window : windows) {
+                long leaving = currentHour - window.hours();
+                if (ringHours[slot(leaving)] == leaving) {
+                    ring.get(slot(leaving)).forEach((filmId, tally) ->
+                            window.add(filmId, -tally.weight, -tally.likes));
+                }
+            }
+            ring.get(slot(currentHour)).clear();
+            ringHours[slot(currentHour)] = currentHour;
+        }
+        if ((now - baseMillis) / halfLifeMillis > REBASE_EXPONENT) {
+            rebase(now);
+        }
+    }
+
+    private void rebase(long now) {
+        double factor = Math.pow(2, -(now - baseMillis) / halfLifeMillis);
+        ring.forEach(bucket -> bucket.values().forEach(tally -> tally.weight *= factor));
+        for (Window window : windows) {
+            window.scale(factor);
+        }
+        baseMillis = now;
+    }
+
+    private void reset(long now) {
+        currentHour = now / BUCKET_MILLIS;
+        baseMillis = now;
+        ring.forEach(Map::clear);
+        for (int i = 0; i < ringSize; i++) {
+            long hour = currentHour - i;
+            ringHours[slot(hour)] = hour;
+        }
+        for (Window window : windows) {
+            window.clear();
+        }
+    }
+
+    private int slot(long hour) {
+        return (int) Math.floorMod(hour, (long) ringSize);
+    }
+
+    private static int parseHours(String window) {
+        if (window == null || window.length() < 2) {
+            throw new ValidationException("Некорректное окно: " + window);
+        }
+        char unit = Character.toLowerCase(window.charAt(window.length() - 1));
+        int amount;
+        try {
+            amount = Integer.parseInt(window.substring(0, window.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректное окно: " + window);
+        }
+        if (amount <= 0 || unit != 'h' && unit != 'd') {
+            throw new ValidationException("Некорректное окно: " + window);
+        }
+        return unit == 'd' ? amount * 24 : amount;
+    }
+
+    private record Scored(int filmId, double score) {
+    }
+
+    private static final class Tally {
+        private double weight;
+        private int likes;
+
+        void add(double weightDelta, int likesDelta) {
+            weight += weightDelta;
+            likes += likesDelta;
+        }
+    }
+
+    private static final class Window {
+        private final String name;
+        private final int hours;
+        private final Map<Integer, Tally> scores = new HashMap<>();
+        private final TreeSet<Scored> order = new TreeSet<>(ORDER);
+
+        Window(String name, int hours) {
+            this.name = name;
+            this.hours = hours;
+        }
+
+        String name() {
+            return name;
+        }
+
+        int hours() {
+            return hours;
+        }
+
+        void add(int filmId, double weightDelta, int likesDelta) {
+            Tally tally = scores.get(filmId);
+            if (tally == null) {
+                if (likesDelta <= 0) {
+                    return;
+                }
+                tally = new Tally();
+                scores.put(filmId, tally);
+            } else {
+                order.remove(new Scored(filmId, tally.weight));
+            }
+            tally.add(weightDelta, likesDelta);
+            if (tally.likes > 0) {
+                order.add(new Scored(filmId, tally.weight));
+            } else {
+                scores.remove(filmId);
+            }
+        }
+
+        void remove(int filmId) {
+            Tally tally = scores.remove(filmId);
+            if (tally != null) {
+                order.remove(new Scored(filmId, tally.weight));
+            }
+        }
+
+        void scale(double factor) {
+            order.clear();
+            scores.forEach((filmId, tally) -> {
+                tally.weight *= factor;
+                order.add(new Scored(filmId, tally.weight));
+            });
+        }
+
+        void clear() {
+            scores.clear();
+            order.clear();
+        }
+
+        List<Integer> top(int count) {
+            List<Integer> ids = new ArrayList<>(Math.min(count, order.size()));
+            for (Scored scored : order) {
+                if (ids.size() == count) {
+                    break;
+                }
+                ids.add(scored.filmId());
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.DirectorRepository;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.dto.FilmField;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+
+/**
+ * Триграммный инвертированный индекс по названиям фильмов и именам режиссёров для поиска подстроки.
+ * Тексты хранятся нормализованными ({@link TextNormalizer}); списки вхождений — сжатые битовые карты
+ * id. Запрос из трёх и более символов пересекает списки своих триграмм, начиная с самого короткого, и
+ * проверяет кандидатов по сохранённому тексту, так что ответ совпадает с {@code LIKE '%q%'}; более
+ * короткий запрос проверяется по всем текстам в памяти. Изменения применяются после коммита,
+ * пришедшие во время перестройки проигрываются поверх загруженных данных.
+ */
+@Component
+public class TrigramIndex {
+    private static final Logger log = LoggerFactory.getLogger(TrigramIndex.class);
+    private static final Set<FilmField> INDEXED_FIELDS = EnumSet.of(FilmField.ID, FilmField.NAME, FilmField.DIRECTORS);
+    private static final int TITLE_WEIGHT = 2;
+
+    private final FilmRepository filmRepository;
+    private final DirectorRepository directorRepository;
+    private final Postings titles = new Postings();
+    private final Postings directorNames = new Postings();
+    private final Map<Integer, int[]> directorsByFilm = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> filmsByDirector = new HashMap<>();
+    private List<Runnable> replayLog;
+    private volatile boolean ready;
+
+    public TrigramIndex(FilmRepository filmRepository, DirectorRepository directorRepository) {
+        this.filmRepository = filmRepository;
+        this.directorRepository = directorRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void rebuild() {
+        synchronized (this) {
+            replayLog = new ArrayList<>();
+        }
+        List<Director> directors = directorRepository.findAll();
+        List<Film> films = filmRepository.getAll(INDEXED_FIELDS);
+        synchronized (this) {
+            titles.clear();
+            directorNames.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+            directors.forEach(director -> saveDirector(director.getId(), director.getName()));
+            films.forEach(film -> saveFilm(film.getId(), film.getName(), directorIds(film)));
+            List<Runnable> pending = replayLog;
+            replayLog = null;
+            pending.forEach(Runnable::run);
+            ready = true;
+            log.debug("Триграммный индекс перестроен: {} фильмов, {} режиссёров", titles.size(), directorNames.size());
+        }
+    }
+
+    public void filmSaved(Film film) {
+        int filmId = film.getId();
+        String name = film.getName();
+        int[] directorIds = directorIds(film);
+        AfterCommit.run(() -> apply(() -> saveFilm(filmId, name, directorIds)));
+    }
+
+    public void filmRemoved(int filmId) {
+        AfterCommit.run(() -> apply(() -> removeFilm(filmId)));
+    }
+
+    public void directorSaved(Director director) {
+        int directorId = director.getId();
+        String name = director.getName();
+        AfterCommit.run(() -> apply(() -> saveDirector(directorId, name)));
+    }
+
+    public void directorRemoved(int directorId) {
+        AfterCommit.run(() -> apply(() -> {
+            directorNames.remove(directorId);
+            RoaringBitmap films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                films.forEach(filmId -> directorsByFilm.computeIfPresent(filmId, (id, directorIds) ->
+                        Arrays.stream(directorIds).filter(other -> other != directorId).toArray()));
+            }
+        }));
+    }
+
+    /**
+     * Качество совпадения для каждого найденного фильма: 4 — текст совпал с запросом целиком, 3 —
+     * начинается с него, 2 — с него начинается одно из слов, 1 — запрос встречается внутри. Совпадение в
+     * названии весит вдвое больше, чем в имени режиссёра; берётся лучшее из совпадений фильма.
+     */
+    public synchronized Map<Integer, Integer> matchScores(String query, boolean byTitle, boolean byDirector) {
+        String normalized = TextNormalizer.normalize(query);
+        Map<Integer, Integer> scores = new HashMap<>();
+        if (byTitle) {
+            titles.search(normalized).forEach(filmId ->
+                    scores.put(filmId, TITLE_WEIGHT * quality(titles.text(filmId), normalized)));
+        }
+        if (byDirector) {
+            directorNames.search(normalized).forEach(directorId -> {
+                RoaringBitmap directed = filmsByDirector.get(directorId);
+                if (directed != null) {
+                    int quality = quality(directorNames.text(directorId), normalized);
+                    directed.forEach(filmId -> scores.merge(filmId, quality, Math::max));
+                }
+            });
+        }
+        return scores;
+    }
+
+    private static int quality(String text, String query) {
+        if (text.equals(query)) {
+            return 4;
+        }
+        if (text.startsWith(query)) {
+            return 3;
+        }
+        for (int from = text.indexOf(query, 1); from > 0; from = text.indexOf(query, from + 1)) {
+            if (!Character.isLetterOrDigit(text.charAt(from - 1))) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    private synchronized void apply(Runnable change) {
+        if (replayLog != null) {
+            replayLog.add(change);
+            return;
+        }
+        change.run();
+    }
+
+    private void saveFilm(int filmId, String name, int[] directorIds) {
+        removeFilm(filmId);
+        titles.put(filmId, TextNormalizer.normalize(name));
+        directorsByFilm.put(filmId, directorIds);
+        for (int directorId : directorIds) {
+            filmsByDirector.computeIfAbsent(directorId, id -> new RoaringBitmap()).add(filmId);
+        }
+    }
+
+    private void removeFilm(int filmId) {
+        titles.remove(filmId);
+        int[] directorIds = directorsByFilm.remove(filmId);
+        if (directorIds == null) {
+            return;
+        }
+        for (int directorId : directorIds) {
+            RoaringBitmap films = filmsByDirector.get(directorId);
+            if (films != null && films.remove(filmId) && films.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+        }
+    }
+
+    private void saveDirector(int directorId, String name) {
+        directorNames.remove(directorId);
+        directorNames.put(directorId, TextNormalizer.normalize(name));
+    }
+
+    private static int[] directorIds(Film film) {
+        return film.getDirectors() == null ? new int[0] : film.getDirectors().stream()
+                .mapToInt(Director::getId)
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * Тексты по id и списки вхождений триграмм. Триграмма упакована в long по 16 бит на символ.
+     */
+    private static final class Postings {
+        private final Map<Integer, String> texts = new HashMap<>();
+        private final Map<Long, RoaringBitmap> postings = new HashMap<>();
+
+        int size() {
+            return texts.size();
+        }
+
+        String text(int id) {
+            return texts.get(id);
+        }
+
+        void clear() {
+            texts.clear();
+            postings.clear();
+        }
+
+        void put(int id, String text) {
+            texts.put(id, text);
+            for (long trigram : trigrams(text)) {
+                postings.computeIfAbsent(trigram, key -> new RoaringBitmap()).add(id);
+            }
+        }
+
+        void remove(int id) {
+            String text = texts.remove(id);
+            if (text == null) {
+                return;
+            }
+            for (long trigram : trigrams(text)) {
+                RoaringBitmap ids = postings.get(trigram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+
+        RoaringBitmap search(String query) {
+            RoaringBitmap candidates;
+            if (query.length() < 3) {
+                candidates = new RoaringBitmap();
+                texts.keySet().forEach(candidates::add);
+            } else {
+                List<RoaringBitmap> lists = new ArrayList<>();
+                for (long trigram : trigrams(query)) {
+                    RoaringBitmap ids = postings.get(trigram);
+                    if (ids == null) {
+                        return new RoaringBitmap();
+                    }
+                    lists.add(ids);
+                }
+                lists.sort(Comparator.comparingInt(RoaringBitmap::cardinality));
+                candidates = lists.get(0);
+                for (int i = 1; i < lists.size() && !candidates.isEmpty(); i++) {
+                    candidates = candidates.and(lists.get(i));
+                }
+            }
+            RoaringBitmap matches = new RoaringBitmap();
+            candidates.forEach(id -> {
+                if (texts.get(id).contains(query)) {
+                    matches.add(id);
+                }
+            });
+            return matches;
+        }
+
+        private static Set<Long> trigrams(String text) {
+            Set<Long> trigrams = new HashSet<>();
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                trigrams.add((long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2));
+            }
+            return trigrams;
+        }
+    }
+}
@@ -1,4 +1,5 @@
 -- Очистка всех таблиц
+DELETE FROM film_stats;
 DELETE FROM friendships;
 DELETE FROM film_likes;
 DELETE FROM film_genres;
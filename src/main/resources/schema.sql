@@ -42,6 +42,7 @@ CREATE TABLE IF NOT EXISTS film_likes (
                                           id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
                                           film_id INTEGER REFERENCES films,
                                           user_id INTEGER REFERENCES users,
+                                          created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
                                           CONSTRAINT unique_user_like UNIQUE (film_id, user_id)
     );
 
@@ -90,4 +91,15 @@ CREATE TABLE IF NOT EXISTS feed (
                                       entity_id INTEGER NOT NULL,
                                       event_type varchar(10) NOT NULL,
                                       operation varchar(10) NOT NULL
-    );
\ No newline at end of file
+    );
+
+CREATE TABLE IF NOT EXISTS film_stats (
+                                          film_id INTEGER PRIMARY KEY REFERENCES films(film_id) ON DELETE CASCADE,
+                                          likes_count BIGINT NOT NULL DEFAULT 0,
+                                          reviews_count BIGINT NOT NULL DEFAULT 0,
+                                          reviews_useful BIGINT NOT NULL DEFAULT 0
+    );
+
+CREATE INDEX IF NOT EXISTS idx_film_stats_likes ON film_stats (likes_count DESC, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date ON films (release_date);
+CREATE INDEX IF NOT EXISTS idx_film_likes_created_at ON film_likes (created_at);
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.FeedRepository;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.DirectorFilmIndex;
+import ru.yandex.practicum.filmorate.storage.LikeBitmapIndex;
+import ru.yandex.practicum.filmorate.storage.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie;
+import ru.yandex.practicum.filmorate.storage.TrendingEngine;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LikeIngestionServiceTest {
+    private final FilmRepository filmRepository = mock(FilmRepository.class);
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final PopularityIndex popularityIndex = mock(PopularityIndex.class);
+    private final LikeBitmapIndex likeBitmapIndex = mock(LikeBitmapIndex.class);
+    private final TrendingEngine trendingEngine = mock(TrendingEngine.class);
+    private final DirectorFilmIndex directorFilmIndex = mock(DirectorFilmIndex.class);
+    private final SuggestTrie suggestTrie = mock(SuggestTrie.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+
+    @BeforeEach
+    public void setUp() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(filmRepository.putLikes(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(filmRepository.removeLikes(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    public void likeUnlikeLikeIsCoalescedIntoOneInsert() {
+        LikeIngestionService service = service(true, 100);
+
+        service.like(1, 10);
+        service.unlike(1, 10);
+        service.like(1, 10);
+        service.flush();
+
+        verify(filmRepository).putLikes(List.of(new FilmLike(1, 10)));
+        verify(filmRepository).removeLikes(List.of());
+        verify(popularityIndex, times(1)).likeAdded(1);
+        verify(popularityIndex, never()).likeRemoved(anyInt());
+        verify(feedRepository).createAll(argThat(feeds -> feeds.size() == 3));
+    }
+
+    @Test
+    public void likeThenUnlikeIsCoalescedIntoOneDelete() {
+        LikeIngestionService service = service(true, 100);
+
+        service.like(1, 10);
+        service.unlike(1, 10);
+        service.flush();
+
+        verify(filmRepository).putLikes(List.of());
+        verify(filmRepository).removeLikes(List.of(new FilmLike(1, 10)));
+        verify(popularityIndex, never()).likeAdded(anyInt());
+    }
+
+    @Test
+    public void failedBatchIsRetriedOneOperationAtATime() {
+        when(filmRepository.putLikes(anyList())).thenAnswer(invocation -> {
+            List<FilmLike> likes = invocation.getArgument(0);
+            if (likes.size() > 1) {
+                throw new IllegalStateException("batch failed");
+            }
+            return likes;
+        });
+        LikeIngestionService service = service(true, 100);
+
+        service.like(1, 10);
+        service.like(2, 10);
+        service.flush();
+
+        verify(filmRepository).putLikes(List.of(new FilmLike(1, 10)));
+        verify(filmRepository).putLikes(List.of(new FilmLike(2, 10)));
+        verify(popularityIndex, times(1)).likeAdded(1);
+        verify(popularityIndex, times(1)).likeAdded(2);
+        verify(feedRepository, times(2)).create(any());
+    }
+
+    @Test
+    public void fullQueueRejectsNewOperations() {
+        LikeIngestionService service = service(true, 2);
+
+        service.like(1, 10);
+        service.like(2, 10);
+
+        assertThrows(ServiceUnavailableException.class, () -> service.like(3, 10));
+    }
+
+    @Test
+    public void concurrentDuplicateLikeIsTreatedAsAlreadyLiked() {
+        when(filmRepository.putLikes(anyList()))
+                .thenThrow(new DuplicateKeyException("unique_user_like"))
+                .thenReturn(List.of());
+        LikeIngestionService service = service(false, 100);
+
+        assertDoesNotThrow(() -> service.like(1, 10));
+
+        verify(filmRepository, times(2)).putLikes(List.of(new FilmLike(1, 10)));
+        verify(popularityIndex, never()).likeAdded(anyInt());
+    }
+
+    private LikeIngestionService service(boolean writeBehind, int capacity) {
+        return new LikeIngestionService(filmRepository, feedRepository, popularityIndex, likeBitmapIndex,
+                trendingEngine, directorFilmIndex, suggestTrie, transactionTemplate, writeBehind, capacity, 500);
+    }
+}
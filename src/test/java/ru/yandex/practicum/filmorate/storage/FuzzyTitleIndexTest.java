@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FuzzyTitleIndexTest {
+    private final FilmRepository filmRepository = mock(FilmRepository.class);
+
+    @Test
+    public void treeIsRebuiltOnceDeadTermsOutnumberLiveOnes() {
+        FuzzyTitleIndex index = build(film(1, "Матрица"), film(2, "Марсианин"), film(3, "Терминатор"));
+
+        index.filmRemoved(1);
+        index.filmRemoved(2);
+
+        assertEquals(List.of(), index.search("матрица"));
+        assertEquals(List.of(), index.search("марсианин"));
+        assertEquals(List.of(3), index.search("терменатор"));
+
+        index.filmSaved(film(1, "Матрица"));
+
+        assertEquals(List.of(1), index.search("матрца"));
+        assertEquals(List.of(3), index.search("терминатор"));
+    }
+
+    @Test
+    public void deadTermComesBackWithNewFilmAndSurvivesLaterRebuild() {
+        FuzzyTitleIndex index = build(film(1, "Матрица"), film(2, "Матрица: Перезагрузка"), film(3, "Терминатор"),
+                film(4, "Чужой"));
+
+        index.filmRemoved(1);
+        assertEquals(List.of(2), index.search("матрица"));
+
+        index.filmRemoved(2);
+        assertEquals(List.of(), index.search("матрица"));
+        assertEquals(List.of(), index.search("перезагрузка"));
+
+        index.filmSaved(film(5, "Матрица"));
+        assertEquals(List.of(5), index.search("матрица"));
+
+        index.filmRemoved(3);
+        index.filmRemoved(4);
+
+        assertEquals(List.of(5), index.search("матрица"));
+        assertEquals(List.of(5), index.search("матрца"));
+        assertEquals(List.of(), index.search("чужой"));
+        assertEquals(List.of(), index.search("терминатор"));
+        assertEquals(List.of(), index.search("перезагрузка"));
+    }
+
+    @Test
+    public void renamedFilmIsFoundOnlyByNewTitle() {
+        FuzzyTitleIndex index = build(film(1, "Чужой"), film(2, "Чужие"));
+
+        index.filmSaved(film(1, "Хищник"));
+
+        assertEquals(List.of(), index.search("чужой"));
+        assertEquals(List.of(2), index.search("чужие"));
+        assertEquals(List.of(1), index.search("хищнек"));
+    }
+
+    private FuzzyTitleIndex build(Film... films) {
+        when(filmRepository.getAll(anySet())).thenReturn(Arrays.asList(films));
+        FuzzyTitleIndex index = new FuzzyTitleIndex(filmRepository, 2, 50, 1000);
+        index.rebuild();
+        return index;
+    }
+
+    private static Film film(int id, String name) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        return film;
+    }
+}
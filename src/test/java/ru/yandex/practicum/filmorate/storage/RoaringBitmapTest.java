@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoaringBitmapTest {
+    private static final int ARRAY_MAX = 4096;
+    private static final int HIGH = 3 << 16;
+
+    @Test
+    public void containerSwitchesToBitmapAfterArrayLimitAndBack() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < ARRAY_MAX; i++) {
+            int value = HIGH + i * 7;
+            assertTrue(bitmap.add(value));
+            expected.add(value);
+        }
+        assertSame(expected, bitmap);
+
+        assertTrue(bitmap.add(HIGH + 1));
+        expected.add(HIGH + 1);
+        assertSame(expected, bitmap);
+        assertFalse(bitmap.add(HIGH + 1));
+
+        assertTrue(bitmap.remove(HIGH + 7));
+        expected.remove(HIGH + 7);
+        assertSame(expected, bitmap);
+        assertFalse(bitmap.remove(HIGH + 7));
+
+        assertTrue(bitmap.add(HIGH + 65535));
+        expected.add(HIGH + 65535);
+        assertTrue(bitmap.remove(HIGH));
+        expected.remove(HIGH);
+        assertSame(expected, bitmap);
+    }
+
+    @Test
+    public void removingLastValueDropsContainer() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(70000);
+        bitmap.add(5);
+        assertTrue(bitmap.remove(70000));
+        assertFalse(bitmap.contains(70000));
+        assertArrayEquals(new int[]{5}, bitmap.toArray());
+        assertTrue(bitmap.remove(5));
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void randomAddsAndRemovesMatchTreeSet() {
+        Random random = new Random(42);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int round = 0; round < 20; round++) {
+            int span = round % 2 == 0 ? 9000 : 300_000;
+            for (int i = 0; i < 5000; i++) {
+                int value = random.nextInt(span);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.remove(value), bitmap.remove(value));
+                } else {
+                    assertEquals(expected.add(value), bitmap.add(value));
+                }
+            }
+            assertSame(expected, bitmap);
+        }
+    }
+
+    @Test
+    public void setOperationsMatchTreeSet() {
+        Random random = new Random(7);
+        int[] sizes = {0, 10, ARRAY_MAX - 1, ARRAY_MAX, ARRAY_MAX + 1, 12_000};
+        for (int firstSize : sizes) {
+            for (int secondSize : sizes) {
+                TreeSet<Integer> first = randomSet(random, firstSize);
+                TreeSet<Integer> second = randomSet(random, secondSize);
+                RoaringBitmap firstBitmap = toBitmap(first);
+                RoaringBitmap secondBitmap = toBitmap(second);
+
+                TreeSet<Integer> and = new TreeSet<>(first);
+                and.retainAll(second);
+                TreeSet<Integer> andNot = new TreeSet<>(first);
+                andNot.removeAll(second);
+                TreeSet<Integer> or = new TreeSet<>(first);
+                or.addAll(second);
+
+                assertSame(and, firstBitmap.and(secondBitmap));
+                assertEquals(and.size(), firstBitmap.andCardinality(secondBitmap));
+                assertSame(andNot, firstBitmap.andNot(secondBitmap));
+                assertSame(or, firstBitmap.or(secondBitmap));
+
+                RoaringBitmap union = firstBitmap.or(secondBitmap);
+                union.add(Integer.MAX_VALUE);
+                assertSame(first, firstBitmap);
+                assertSame(second, secondBitmap);
+            }
+        }
+    }
+
+    /**
+     * Значения сгущены в двух контейнерах, чтобы размеры около 4096 давали и массивы, и битовые карты.
+     */
+    private static TreeSet<Integer> randomSet(Random random, int size) {
+        TreeSet<Integer> values = new TreeSet<>();
+        while (values.size() < size) {
+            values.add((random.nextBoolean() ? 0 : HIGH) + random.nextInt(2 * ARRAY_MAX));
+        }
+        return values;
+    }
+
+    private static RoaringBitmap toBitmap(TreeSet<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        values.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static void assertSame(TreeSet<Integer> expected, RoaringBitmap actual) {
+        assertEquals(expected.size(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), actual.toArray());
+        for (int value : expected) {
+            assertTrue(actual.contains(value));
+        }
+    }
+}
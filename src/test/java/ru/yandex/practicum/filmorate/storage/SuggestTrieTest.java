@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.DirectorRepository;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie.Kind;
+import ru.yandex.practicum.filmorate.storage.SuggestTrie.Suggestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SuggestTrieTest {
+    private final FilmRepository filmRepository = mock(FilmRepository.class);
+    private final DirectorRepository directorRepository = mock(DirectorRepository.class);
+    private final List<Film> films = new ArrayList<>();
+    private final List<Director> directors = new ArrayList<>();
+    private final Map<Integer, Long> likes = new HashMap<>();
+
+    @Test
+    public void prefixEndingMidEdgeFindsSubtree() {
+        addFilm(1, "Матрица", 5);
+        addFilm(2, "Марс", 3);
+        addFilm(3, "Мастер и Маргарита", 1);
+        SuggestTrie trie = build(10);
+
+        assertEquals(List.of(film(1, "Матрица", 5)), trie.suggest("мат", 10));
+        assertEquals(List.of(film(1, "Матрица", 5)), trie.suggest("Матри", 10));
+        assertEquals(List.of(film(2, "Марс", 3), film(3, "Мастер и Маргарита", 1)), trie.suggest("мар", 10));
+        assertEquals(List.of(film(3, "Мастер и Маргарита", 1)), trie.suggest("маргар", 10));
+        assertEquals(List.of(film(1, "Матрица", 5), film(2, "Марс", 3), film(3, "Мастер и Маргарита", 1)),
+                trie.suggest("ма", 10));
+        assertEquals(List.of(), trie.suggest("матрицы", 10));
+        assertEquals(List.of(), trie.suggest("мак", 10));
+    }
+
+    @Test
+    public void removedFilmDisappearsAndSiblingsStayReachableAfterCompaction() {
+        addFilm(1, "Матрица", 5);
+        addFilm(2, "Матрёшка", 3);
+        addFilm(3, "Марс", 1);
+        SuggestTrie trie = build(10);
+
+        trie.filmRemoved(2);
+
+        assertEquals(List.of(), trie.suggest("матре", 10));
+        assertEquals(List.of(film(1, "Матрица", 5)), trie.suggest("матр", 10));
+        assertEquals(List.of(film(1, "Матрица", 5)), trie.suggest("матриц", 10));
+        assertEquals(List.of(film(1, "Матрица", 5), film(3, "Марс", 1)), trie.suggest("ма", 10));
+
+        trie.filmRemoved(3);
+
+        assertEquals(List.of(), trie.suggest("мар", 10));
+        assertEquals(List.of(film(1, "Матрица", 5)), trie.suggest("м", 10));
+        assertEquals(List.of(film(1, "Матрица", 5)), trie.suggest("мат", 10));
+
+        trie.filmSaved(film(2, "Матрёшка"));
+
+        assertEquals(List.of(film(2, "Матрёшка", 0)), trie.suggest("матре", 10));
+        assertEquals(List.of(film(1, "Матрица", 5), film(2, "Матрёшка", 0)), trie.suggest("матр", 10));
+    }
+
+    @Test
+    public void likeChangeReordersTopOfAncestorNodes() {
+        addFilm(1, "Матрица", 3);
+        addFilm(2, "Марс", 2);
+        addFilm(3, "Мастер", 1, 7);
+        directors.add(new Director(7, "Мартин Скорсезе"));
+        SuggestTrie trie = build(2);
+
+        assertEquals(List.of(film(1, "Матрица", 3), film(2, "Марс", 2)), trie.suggest("ма", 10));
+
+        trie.likeAdded(3);
+        trie.likeAdded(3);
+        trie.likeAdded(3);
+
+        List<Suggestion> expected = List.of(film(3, "Мастер", 4), director(7, "Мартин Скорсезе", 4));
+        assertEquals(expected, trie.suggest("ма", 10));
+        assertEquals(expected, trie.suggest("м", 10));
+        assertEquals(List.of(director(7, "Мартин Скорсезе", 4), film(2, "Марс", 2)), trie.suggest("мар", 10));
+
+        trie.likeRemoved(3);
+        trie.likeRemoved(3);
+        trie.likeRemoved(3);
+        trie.likeRemoved(3);
+
+        assertEquals(List.of(film(1, "Матрица", 3), film(2, "Марс", 2)), trie.suggest("ма", 10));
+        assertEquals(List.of(film(3, "Мастер", 0)), trie.suggest("мас", 10));
+        assertEquals(List.of(film(2, "Марс", 2), director(7, "Мартин Скорсезе", 0)), trie.suggest("мар", 10));
+    }
+
+    private SuggestTrie build(int topK) {
+        when(directorRepository.findAll()).thenReturn(directors);
+        when(filmRepository.getAll(anySet())).thenReturn(films);
+        when(filmRepository.getLikeCounts()).thenReturn(likes);
+        SuggestTrie trie = new SuggestTrie(filmRepository, directorRepository, topK);
+        trie.rebuild();
+        return trie;
+    }
+
+    private void addFilm(int id, String name, long filmLikes, int... directorIds) {
+        Film film = film(id, name);
+        for (int directorId : directorIds) {
+            film.getDirectors().add(new Director(directorId, null));
+        }
+        films.add(film);
+        likes.put(id, filmLikes);
+    }
+
+    private static Film film(int id, String name) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        return film;
+    }
+
+    private static Suggestion film(int id, String name, long likes) {
+        return new Suggestion(Kind.FILM, id, name, likes);
+    }
+
+    private static Suggestion director(int id, String name, long likes) {
+        return new Suggestion(Kind.DIRECTOR, id, name, likes);
+    }
+}
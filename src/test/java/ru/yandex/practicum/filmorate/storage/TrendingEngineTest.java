@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.FilmRepository;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class TrendingEngineTest {
+    private static final Instant START = Instant.ofEpochSecond(1_000_000L * 3600 + 600);
+
+    private final MutableClock clock = new MutableClock(START);
+    private final TrendingEngine engine = new TrendingEngine(mock(FilmRepository.class), new String[]{"1h", "3h"}, 6,
+            clock);
+
+    @Test
+    public void bucketsLeaveEachWindowAsTheRingAdvances() {
+        engine.likeAdded(1);
+        engine.likeAdded(1);
+        clock.advance(Duration.ofHours(1));
+        engine.likeAdded(2);
+
+        assertEquals(List.of(2), engine.top("1h", 10));
+        assertEquals(List.of(1, 2), engine.top("3h", 10));
+
+        clock.advance(Duration.ofHours(1));
+        assertEquals(List.of(), engine.top("1h", 10));
+        assertEquals(List.of(1, 2), engine.top("3h", 10));
+
+        clock.advance(Duration.ofHours(1));
+        assertEquals(List.of(2), engine.top("3h", 10));
+
+        clock.advance(Duration.ofHours(1));
+        assertEquals(List.of(), engine.top("3h", 10));
+    }
+
+    @Test
+    public void gapLongerThanRingStartsFromEmptyWindows() {
+        engine.likeAdded(1);
+        clock.advance(Duration.ofHours(10));
+        engine.likeAdded(2);
+
+        assertEquals(List.of(2), engine.top("3h", 10));
+        assertEquals(List.of(2), engine.top("1h", 10));
+    }
+
+    @Test
+    public void decayedOrderSurvivesRebase() {
+        engine.likeAdded(3);
+        for (int hour = 1; hour < 120; hour++) {
+            clock.advance(Duration.ofHours(1));
+            engine.likeAdded(3);
+        }
+        engine.likeAdded(4);
+        engine.likeAdded(4);
+
+        assertEquals(List.of(3, 4), engine.top("3h", 10));
+
+        engine.likeAdded(4);
+
+        assertEquals(List.of(4, 3), engine.top("3h", 10));
+        assertEquals(List.of(4), engine.top("3h", 1));
+    }
+
+    @Test
+    public void removedFilmLeavesAllWindows() {
+        engine.likeAdded(1);
+        engine.likeAdded(2);
+
+        engine.filmRemoved(1);
+
+        assertEquals(List.of(2), engine.top("1h", 10));
+        assertEquals(List.of(2), engine.top("3h", 10));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}